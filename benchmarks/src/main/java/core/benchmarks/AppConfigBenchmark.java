@@ -0,0 +1,116 @@
+package core.benchmarks;
+
+import core.config.AppConfig;
+import core.config.ConfigSetting;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link AppConfig#getProperty(java.lang.String) AppConfig.getProperty}
+ * when the configuration is shared by several threads, as it is by the frames and
+ * services of an application: only readers, and readers alongside a thread that keeps
+ * changing a value. Integer values are read either parsing the raw value on every read,
+ * or through a typed setting parsed only when the configuration changes.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppConfigBenchmark {
+
+    private static final String[] KEYS = {"db.url", "db.user", "ui.theme", "ui.locale", "report.path"};
+
+    private File directory;
+    private AppConfig config;
+    private ConfigSetting.IntSetting pageSize;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("appConfigBenchmark").toFile();
+        config = new AppConfig("Benchmark", null, directory.getPath()) {
+            @Override
+            public Properties getDefault() {
+                Properties defaults = new Properties();
+                for (String key : KEYS)
+                    defaults.setProperty(key, "value of " + key);
+                defaults.setProperty("ui.pageSize", "100");
+                return defaults;
+            }
+        };
+        config.load();
+        pageSize = config.intSetting("ui.pageSize", 50);
+    }
+
+    @TearDown
+    public void cleanup() {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String readOnly(Cursor cursor) {
+        return config.getProperty(cursor.nextKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int parsedOnRead() {
+        return Integer.parseInt(config.getProperty("ui.pageSize"));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int typedSetting() {
+        return pageSize.getInt();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public String reader(Cursor cursor) {
+        return config.getProperty(cursor.nextKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void writer(Cursor cursor) {
+        config.setProperty("ui.theme", (cursor.next++ & 1) == 0 ? "dark" : "light");
+    }
+    /**
+     * Per-thread position over the keys, so threads don't contend on anything but
+     * the configuration itself.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        String nextKey() {
+            next = next + 1 == KEYS.length ? 0 : next + 1;
+            return KEYS[next];
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package core.benchmarks;
+
+import core.benchmarks.data.BenchmarkDataSession;
+import core.benchmarks.data.BenchmarkEntity;
+import core.benchmarks.data.BenchmarkEntityService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rows per second written through the single-record {@code createOrUpdate} path,
+ * one transaction per row, against the bulk {@code createOrUpdateAll} path, one
+ * batched transaction for all the rows, and the stateless {@code bulkInsert} path.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class BatchWriteBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private BenchmarkDataSession dataSession;
+    private BenchmarkEntityService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSession = new BenchmarkDataSession("batchWrite");
+        dataSession.init(null);
+        service = new BenchmarkEntityService(dataSession);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws Exception {
+        dataSession.truncate();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        dataSession.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void singleRecord() throws Exception {
+        for (BenchmarkEntity entity : newRows())
+            service.createOrUpdate(entity);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int batched() throws Exception {
+        return service.createOrUpdateAll(newRows()).getSucceeded();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int stateless() throws Exception {
+        return service.bulkInsert(newRows());
+    }
+
+    private static List<BenchmarkEntity> newRows() {
+        List<BenchmarkEntity> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            rows.add(new BenchmarkEntity("Row " + i, i, i % 2 == 0));
+        return rows;
+    }
+}
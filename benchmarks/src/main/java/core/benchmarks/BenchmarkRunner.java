@@ -0,0 +1,30 @@
+package core.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes their results as JSON, so runs of different releases
+ * can be compared by a tool. Every argument is a regular expression selecting the
+ * benchmarks to run, all of them if there's none. The results are written to
+ * <i>jmh-result.json</i> in the working directory unless the system property
+ * <i>benchmarks.result</i> points elsewhere.
+ * <p>Run with {@code java -cp target/benchmarks.jar core.benchmarks.BenchmarkRunner [pattern...]}.</p>
+ * @author Rene Vera Apale
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("benchmarks.result", "jmh-result.json"));
+        if (args.length == 0)
+            options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*");
+        for (String pattern : args)
+            options.include(pattern);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package core.benchmarks;
+
+import core.benchmarks.data.BenchmarkDataSession;
+import core.benchmarks.data.BenchmarkEntity;
+import core.benchmarks.data.BenchmarkEntityService;
+import core.data.access.utils.QueryFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the single-record operations of a data service against an in-memory
+ * database holding a fixed number of rows: create, read by id, update, delete, and
+ * a filtered page like the ones shown by the search frames.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class CrudBenchmark {
+
+    private static final int ROWS = 10000;
+    private static final int PAGE_SIZE = 50;
+
+    private BenchmarkDataSession dataSession;
+    private BenchmarkEntityService service;
+    private List<BenchmarkEntity> rows;
+    private List<QueryFilter> filters;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dataSession = new BenchmarkDataSession("crud");
+        dataSession.init(null);
+        service = new BenchmarkEntityService(dataSession);
+        filters = Arrays.asList(QueryFilter.equal("active", true), QueryFilter.greaterEqual("quantity", ROWS / 2));
+        random = new Random(17);
+    }
+
+    @Setup(Level.Iteration)
+    public void seed() throws Exception {
+        dataSession.truncate();
+        List<BenchmarkEntity> seed = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            seed.add(new BenchmarkEntity("Row " + i, i, i % 2 == 0));
+        service.createOrUpdateAll(seed);
+        rows = seed;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        dataSession.close();
+    }
+
+    @Benchmark
+    public BenchmarkEntity create() throws Exception {
+        return service.createOrUpdate(new BenchmarkEntity("New row", random.nextInt(ROWS), true));
+    }
+
+    @Benchmark
+    public BenchmarkEntity read() throws Exception {
+        return service.getRecord(randomRow().getId());
+    }
+
+    @Benchmark
+    public BenchmarkEntity update() throws Exception {
+        BenchmarkEntity row = randomRow();
+        row.setQuantity(random.nextInt(ROWS));
+        return service.createOrUpdate(row);
+    }
+
+    @Benchmark
+    public void createAndDelete() throws Exception {
+        service.delete(service.createOrUpdate(new BenchmarkEntity("Short lived", 0, false)));
+    }
+
+    @Benchmark
+    public List<BenchmarkEntity> filteredPage() throws Exception {
+        return service.getRecordsPage(filters, "name", true, random.nextInt(ROWS / 4 - PAGE_SIZE), PAGE_SIZE);
+    }
+
+    private BenchmarkEntity randomRow() {
+        return rows.get(random.nextInt(rows.size()));
+    }
+}
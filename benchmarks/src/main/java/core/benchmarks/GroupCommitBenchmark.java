@@ -0,0 +1,67 @@
+package core.benchmarks;
+
+import core.benchmarks.data.BenchmarkDataSession;
+import core.benchmarks.data.BenchmarkEntity;
+import core.benchmarks.data.BenchmarkEntityService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Records per second written by 8 threads calling {@code createOrUpdate} concurrently,
+ * each call in a transaction of its own ({@code groupSize} 1), or merged by group commit
+ * into transactions of up to {@code groupSize} records. Groups larger than the number
+ * of threads never fill up, and always wait for the whole window. The database is in memory, so
+ * commits are cheaper than on a real server and the figures understate the gain.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+@Threads(8)
+public class GroupCommitBenchmark {
+
+    @Param({"1", "4", "8"})
+    private int groupSize;
+
+    private BenchmarkDataSession dataSession;
+    private BenchmarkEntityService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSession = new BenchmarkDataSession("groupCommit");
+        dataSession.init(null);
+        dataSession.setGroupCommit(groupSize, 1, TimeUnit.MILLISECONDS);
+        service = new BenchmarkEntityService(dataSession);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws Exception {
+        dataSession.truncate();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        dataSession.close();
+    }
+
+    @Benchmark
+    public BenchmarkEntity createOrUpdate() throws Exception {
+        return service.createOrUpdate(new BenchmarkEntity("Row", 1, true));
+    }
+}
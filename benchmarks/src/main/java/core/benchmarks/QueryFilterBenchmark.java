@@ -0,0 +1,78 @@
+package core.benchmarks;
+
+import core.data.access.utils.QueryFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of building the filters of a typical search form, and of comparing and hashing
+ * them as done when they're kept in sets or used as keys.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryFilterBenchmark {
+
+    private List<QueryFilter> filters;
+    private List<QueryFilter> sameFilters;
+
+    @Setup
+    public void setup() {
+        filters = searchForm("Row", 10);
+        sameFilters = searchForm("Row", 10);
+    }
+
+    @Benchmark
+    public List<QueryFilter> construction() {
+        return searchForm("Row", 10);
+    }
+
+    @Benchmark
+    public void equality(Blackhole bh) {
+        for (int i = 0; i < filters.size(); i++)
+            bh.consume(filters.get(i).equals(sameFilters.get(i)));
+    }
+
+    @Benchmark
+    public void hashing(Blackhole bh) {
+        for (QueryFilter filter : filters)
+            bh.consume(filter.hashCode());
+    }
+
+    @Benchmark
+    public Set<QueryFilter> hashSet() {
+        return new HashSet<>(filters);
+    }
+
+    private static List<QueryFilter> searchForm(String name, int quantity) {
+        List<QueryFilter> form = new ArrayList<>();
+        form.add(QueryFilter.ilike("name", name));
+        form.add(QueryFilter.greaterEqual("quantity", quantity));
+        form.add(QueryFilter.equal("active", true));
+        form.add(QueryFilter.in("quantity", Arrays.asList(1, 2, 3, 5, 8)));
+        form.add(QueryFilter.isNotNull("created"));
+        form.add(QueryFilter.or(Arrays.asList(
+                QueryFilter.lower("quantity", 100),
+                QueryFilter.notEqual("name", "Row 0"))));
+        return form;
+    }
+}
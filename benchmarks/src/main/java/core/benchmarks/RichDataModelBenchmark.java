@@ -0,0 +1,156 @@
+package core.benchmarks;
+
+import core.gui.RichDataColumn;
+import core.gui.RichDataModel;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link RichDataModel#getValueAt(int, int) RichDataModel.getValueAt} against
+ * the reflective lookup it used before accessors were compiled and cached. Every
+ * invocation reads one full screen of cells for the selected column.
+ * @author Rene Vera Apale
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RichDataModelBenchmark {
+
+    private static final int ROWS = 50;
+
+    @Param({"0", "1", "2", "3"})
+    public int column;
+
+    private RichDataModel<SampleRow> model;
+    private LegacyValueReader legacy;
+
+    @Setup
+    public void setup() {
+        List<SampleRow> rows = SampleRow.create(ROWS);
+        model = new RichDataModel<>();
+        for (RichDataColumn col : SampleRow.columns())
+            model.addColumn(col);
+        model.loadAvailableMethods(SampleRow.class);
+        model.setData(rows);
+        legacy = new LegacyValueReader(rows, SampleRow.columns(), SampleRow.class);
+    }
+
+    @Benchmark
+    public void compiledAccessor(Blackhole bh) {
+        for (int row = 0; row < ROWS; row++)
+            bh.consume(model.getValueAt(row, column));
+    }
+
+    @Benchmark
+    public void reflectiveLookup(Blackhole bh) {
+        for (int row = 0; row < ROWS; row++)
+            bh.consume(legacy.getValueAt(row, column));
+    }
+    /**
+     * Copy of the original cell lookup: a linear scan over the public method names
+     * followed by {@link Class#getMethod(String, Class...) getMethod} and
+     * {@link Method#invoke(Object, Object...) invoke} for every cell.
+     */
+    static class LegacyValueReader {
+
+        private final List<?> data;
+        private final List<RichDataColumn> columns;
+        private final List<String> supportedMethodNames = new ArrayList<>();
+
+        LegacyValueReader(List<?> data, List<RichDataColumn> columns, Class type) {
+            this.data = data;
+            this.columns = columns;
+            for (Method method : type.getMethods())
+                supportedMethodNames.add(method.getName());
+        }
+
+        Object getValueAt(int rowIdx, int colIdx) {
+            Object row = data.get(rowIdx);
+            String requestedMethod;
+            if (columns.get(colIdx).getDataType() == boolean.class | columns.get(colIdx).getDataType() == Boolean.class)
+                requestedMethod = "is";
+            else
+                requestedMethod = "get";
+            requestedMethod += columns.get(colIdx).getProperty();
+            Method method = null;
+            try {
+                for (String methodName : supportedMethodNames) {
+                    if (methodName.equalsIgnoreCase(requestedMethod)) {
+                        method = row.getClass().getMethod(methodName);
+                        break;
+                    }
+                }
+                return method.invoke(row);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+    /**
+     * Plain entity used as row type, with one property per common column type.
+     */
+    public static class SampleRow {
+
+        private final String name;
+        private final int quantity;
+        private final boolean active;
+        private final Date created;
+
+        public SampleRow(String name, int quantity, boolean active, Date created) {
+            this.name = name;
+            this.quantity = quantity;
+            this.active = active;
+            this.created = created;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        static List<SampleRow> create(int count) {
+            List<SampleRow> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                rows.add(new SampleRow("Row " + i, i, i % 2 == 0, new Date(i * 1000L)));
+            return rows;
+        }
+
+        static List<RichDataColumn> columns() {
+            List<RichDataColumn> columns = new ArrayList<>();
+            columns.add(new RichDataColumn("Name", "Name", String.class));
+            columns.add(new RichDataColumn("Quantity", "Quantity", Integer.class));
+            columns.add(new RichDataColumn("Active", "Active", Boolean.class));
+            columns.add(new RichDataColumn("Created", "Created", Date.class));
+            return columns;
+        }
+    }
+}
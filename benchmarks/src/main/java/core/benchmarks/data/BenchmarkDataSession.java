@@ -0,0 +1,65 @@
+package core.benchmarks.data;
+
+import core.config.AppConfig;
+import core.data.session.AbstractDataSession;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * Data session over an in-memory H2 database, with the settings an application
+ * would use for bulk work (JDBC batching and ordered inserts).
+ * @author Rene Vera Apale
+ */
+public class BenchmarkDataSession extends AbstractDataSession {
+
+    public static final int JDBC_BATCH_SIZE = 50;
+
+    private final String databaseName;
+
+    public BenchmarkDataSession(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    @Override
+    public void init(AppConfig config) {
+        Configuration hibernateCfg = new Configuration();
+        hibernateCfg.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        hibernateCfg.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        hibernateCfg.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        hibernateCfg.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        hibernateCfg.setProperty("hibernate.current_session_context_class", "thread");
+        hibernateCfg.setProperty("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE));
+        hibernateCfg.setProperty("hibernate.order_inserts", "true");
+        hibernateCfg.setProperty("hibernate.order_updates", "true");
+        hibernateCfg.addAnnotatedClass(BenchmarkEntity.class);
+        sessionFactory = hibernateCfg.buildSessionFactory();
+    }
+
+    @Override
+    public void close() throws Exception {
+        sessionFactory.close();
+    }
+
+    @Override
+    public void beginTransaction() throws Exception {
+        transaction = getCurrentSession().beginTransaction();
+    }
+
+    @Override
+    public void commit() throws Exception {
+        getCurrentSession().getTransaction().commit();
+    }
+
+    @Override
+    public void rollback() throws Exception {
+        getCurrentSession().getTransaction().rollback();
+    }
+    /**
+     * Removes every row of the benchmark table.
+     * @throws Exception When the table can't be emptied
+     */
+    public void truncate() throws Exception {
+        beginTransaction();
+        getCurrentSession().createQuery("delete from BenchmarkEntity").executeUpdate();
+        commit();
+    }
+}
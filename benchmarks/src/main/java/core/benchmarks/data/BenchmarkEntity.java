@@ -0,0 +1,81 @@
+package core.benchmarks.data;
+
+import java.util.Date;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Simple mapped entity used by the data benchmarks. IDs come from a pooled sequence
+ * so inserts can be batched.
+ * @author Rene Vera Apale
+ */
+@Entity
+@Table(name = "benchmark_entity")
+public class BenchmarkEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "benchmarkSeq")
+    @SequenceGenerator(name = "benchmarkSeq", sequenceName = "benchmark_seq", allocationSize = 100)
+    private Integer id;
+    private String name;
+    private int quantity;
+    private boolean active;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+
+    public BenchmarkEntity() {
+    }
+
+    public BenchmarkEntity(String name, int quantity, boolean active) {
+        this.name = name;
+        this.quantity = quantity;
+        this.active = active;
+        this.created = new Date();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+}
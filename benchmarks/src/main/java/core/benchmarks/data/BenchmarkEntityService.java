@@ -0,0 +1,16 @@
+package core.benchmarks.data;
+
+import core.data.service.AbstractGeneralDataService;
+import core.data.session.AbstractDataSession;
+
+/**
+ * Data service for {@link BenchmarkEntity}.
+ * @author Rene Vera Apale
+ */
+public class BenchmarkEntityService extends AbstractGeneralDataService<BenchmarkEntity> {
+
+    public BenchmarkEntityService(AbstractDataSession dataSession) {
+        super(dataSession, BenchmarkEntity.class);
+        setBatchSize(BenchmarkDataSession.JDBC_BATCH_SIZE);
+    }
+}
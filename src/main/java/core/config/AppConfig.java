@@ -1,25 +1,61 @@
 package core.config;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Allows for simplified access to application global configuration through a properties
  * file on the local file system.
+ * <p>The values are held in an immutable snapshot, replaced as a whole whenever a value
+ * changes, so reading a value never blocks, not even while other threads change values,
+ * and every snapshot is consistent. Optionally the file can be {@link #startWatching() watched},
+ * so changes made to it while the application runs are loaded right away. Registered
+ * {@link ChangeListener listeners} are notified of every change, whatever its origin.</p>
+ * <p>Values read on hot paths should be declared as typed {@link ConfigSetting settings},
+ * which are parsed once per change instead of on every read.</p>
  * @author Rene Vera Apale
  */
 public abstract class AppConfig {
 
     private static final Logger LOGGER = LogManager.getLogger("appLogger");
-    
-    private Properties props;
-    private String propsDescrip, file;
+
+    private final Properties initialProps;
+    private final String propsDescrip, file;
+    private final Object writeLock = new Object();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, ConfigSetting<?>> settings = new LinkedHashMap<>();
+    private volatile Map<String, String> snapshot;
+    private Map<String, String> persisted;
+    private WatchService watcher;
     /**
      * Initializes the configuration using the specified application name, properties file
      * name, and path.
@@ -49,29 +85,39 @@ public abstract class AppConfig {
         if (filePath == null)
             filePath = System.getProperty("user.home");
         this.file = filePath + File.separator + fileName;
-        this.props = props;
+        this.initialProps = props;
+        this.snapshot = Collections.unmodifiableMap(toMap(props));
     }
     /**
      * Performs the loading of the configured properties, using the file described by the name
      * and path pass as parameters in the constructor. First it attempts to read the file contents
-     * as-is and then load the key-value properties. 
-     * If that should fail the default properties are obtained via {@link AppConfig#getDefault() getDefault()} method
-     * and then stored to the file system using the same file
+     * as-is and then load the key-value properties, over the ones passed to the constructor.
+     * If that should fail the default properties are obtained via {@link AppConfig#getDefault() getDefault()} method,
+     * unless properties were passed to the constructor.
+     * The resulting properties are then stored to the file system using the same file, only
+     * if they differ from the file contents
      * @throws FileNotFoundException When the file is inaccessible somehow
      * @throws IOException When the there's an reading/writing error
+     * @throws IllegalArgumentException When the value of a setting is not valid
      */
     public void load() throws FileNotFoundException, IOException {
-        try {
-            FileInputStream stream = new FileInputStream(file);
-            if (this.props == null)
-                this.props = new Properties();
-            this.props.load(stream);
-        } catch(Exception fex) {
-            LOGGER.info("Configuration file not found. Loading default properties.", fex);
-            if (this.props == null)
-                this.props = getDefault();
+        synchronized (writeLock) {
+            Map<String, String> fromFile = null;
+            try {
+                fromFile = readFile();
+            } catch (Exception fex) {
+                LOGGER.info("Configuration file not found. Loading default properties.", fex);
+            }
+            Map<String, String> values;
+            if (fromFile != null)
+                values = merge(toMap(initialProps), fromFile);
+            else
+                values = initialProps != null ? toMap(initialProps) : toMap(getDefault());
+            persisted = fromFile;
+            replace(values);
+            if (!values.equals(fromFile))
+                writeFile(values);
         }
-        props.store(new FileOutputStream(file), propsDescrip);
         LOGGER.info(String.format("Configuration file loaded from \"%s\"", file));
     }
     /**
@@ -80,32 +126,373 @@ public abstract class AppConfig {
      * @return The value of the specified key
      */
     public String getProperty(String prop) {
-        return props.getProperty(prop);
+        return snapshot.get(prop);
+    }
+    /**
+     * Returns every key-value pair of the configuration, as a snapshot that doesn't
+     * reflect later changes.
+     * @return An unmodifiable map with the current values
+     */
+    public Map<String, String> getSnapshot() {
+        return snapshot;
     }
     /**
      * Sets the value for a key. If the key is not present, it's added; otherwise the
-     * current value is replaced with the new one
-     * @param prop
-     * @param value 
+     * current value is replaced with the new one. Listeners are notified if the value
+     * actually changed
+     * @param prop The key to set
+     * @param value The new value of the key
+     * @throws IllegalArgumentException When the key belongs to a setting and the value
+     * is not valid for it
      */
     public void setProperty(String prop, String value) {
-        props.setProperty(prop, value);
+        Objects.requireNonNull(value);
+        synchronized (writeLock) {
+            if (value.equals(snapshot.get(prop)))
+                return;
+            Map<String, String> values = new HashMap<>(snapshot);
+            values.put(prop, value);
+            replace(values);
+        }
     }
     /**
      * Saves the current key-value pairs into the file described by the path and name
-     * passed as parameters in the constructor.
+     * passed as parameters in the constructor. Nothing is written if the file already
+     * holds the same values.
      */
     public void update() {
-        LOGGER.info("Updating current properties with new values");
-        if (this.props == null)
-            this.props = getDefault();
-        try (FileOutputStream outputStream = new FileOutputStream(file)) {
-            props.store(outputStream, propsDescrip);
-            LOGGER.info("Configuration file was succesfully updated");
-        } catch(Exception ex) {
-            LOGGER.error("Configuration file could not be saved", ex);
+        synchronized (writeLock) {
+            if (snapshot.isEmpty() && persisted == null)
+                replace(toMap(getDefault()));
+            if (snapshot.equals(persisted)) {
+                LOGGER.info("Configuration file is up to date, nothing to save");
+                return;
+            }
+            LOGGER.info("Updating current properties with new values");
+            try {
+                writeFile(snapshot);
+                LOGGER.info("Configuration file was succesfully updated");
+            } catch(Exception ex) {
+                LOGGER.error("Configuration file could not be saved", ex);
+            }
+        }
+    }
+    /**
+     * Starts watching the file for changes made by other programs. Whenever the file is
+     * written, its contents are read again, over the properties passed to the constructor,
+     * and replace the current values at once; if any value changed, the listeners are
+     * notified from the watching thread. Contents that can't be read are ignored, keeping
+     * the current values, and so are the contents written by this instance, so saving
+     * never reverts values set afterwards. Does nothing if the file is already being watched.
+     * @throws IOException When the directory of the file can't be watched
+     */
+    public void startWatching() throws IOException {
+        synchronized (writeLock) {
+            if (watcher != null)
+                return;
+            Path path = Paths.get(file).toAbsolutePath();
+            final WatchService service = FileSystems.getDefault().newWatchService();
+            path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            final Path fileName = path.getFileName();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch(service, fileName);
+                }
+            }, "AppConfig-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            watcher = service;
+        }
+        LOGGER.info(String.format("Watching configuration file \"%s\" for changes", file));
+    }
+    /**
+     * Stops watching the file for changes.
+     */
+    public void stopWatching() {
+        synchronized (writeLock) {
+            if (watcher == null)
+                return;
+            try {
+                watcher.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Configuration file watcher could not be closed", ex);
+            }
+            watcher = null;
+        }
+    }
+    /**
+     * Indicates whether the file is being watched for changes.
+     * @return {@code true} if changes made to the file are loaded automatically
+     */
+    public boolean isWatching() {
+        synchronized (writeLock) {
+            return watcher != null;
+        }
+    }
+    /**
+     * Reads the file again, replacing the current values with the properties passed to the
+     * constructor overridden by the file contents, and notifying the listeners if any
+     * value changed. Called automatically when the file is being watched.
+     * @throws IOException When the file can't be read; the current values are kept
+     * @throws IllegalArgumentException When the value of a setting is not valid; the
+     * current values are kept
+     */
+    public void reload() throws IOException {
+        synchronized (writeLock) {
+            Map<String, String> fromFile = readFile();
+            persisted = fromFile;
+            replace(merge(toMap(initialProps), fromFile));
         }
     }
-    
+    /**
+     * Registers a listener that will be notified whenever any value changes.
+     * @param listener The listener to add
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    /**
+     * Removes a previously registered listener.
+     * @param listener The listener to remove
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the integer setting of the specified key, creating it on the first call.
+     * @param key Configuration key
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     */
+    public ConfigSetting.IntSetting intSetting(String key, int defaultValue) {
+        return register(new ConfigSetting.IntSetting(key, defaultValue));
+    }
+    /**
+     * Returns the long integer setting of the specified key, creating it on the first call.
+     * @param key Configuration key
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     */
+    public ConfigSetting.LongSetting longSetting(String key, long defaultValue) {
+        return register(new ConfigSetting.LongSetting(key, defaultValue));
+    }
+    /**
+     * Returns the boolean setting of the specified key, creating it on the first call.
+     * @param key Configuration key
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     */
+    public ConfigSetting.BooleanSetting booleanSetting(String key, boolean defaultValue) {
+        return register(new ConfigSetting.BooleanSetting(key, defaultValue));
+    }
+    /**
+     * Returns the duration setting of the specified key, creating it on the first call.
+     * @param key Configuration key
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     * @see ConfigSetting.DurationSetting
+     */
+    public ConfigSetting.DurationSetting durationSetting(String key, Duration defaultValue) {
+        return register(new ConfigSetting.DurationSetting(key, defaultValue));
+    }
+    /**
+     * Returns the enum setting of the specified key, creating it on the first call.
+     * @param <E> Type of the enum
+     * @param key Configuration key
+     * @param type Enum the values belong to
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     */
+    public <E extends Enum<E>> ConfigSetting.EnumSetting<E> enumSetting(String key, Class<E> type, E defaultValue) {
+        return register(new ConfigSetting.EnumSetting<>(key, type, defaultValue));
+    }
+    /**
+     * Returns the list setting of the specified key, creating it on the first call.
+     * @param key Configuration key
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The setting, parsed from the current values
+     * @throws IllegalArgumentException When the current value is not valid, or the key
+     * was already declared with another type or default
+     * @see ConfigSetting.ListSetting
+     */
+    public ConfigSetting.ListSetting listSetting(String key, List<String> defaultValue) {
+        return register(new ConfigSetting.ListSetting(key, defaultValue));
+    }
+
     public abstract Properties getDefault();
-}
\ No newline at end of file
+
+    // The existing setting was checked to be of the same class
+    @SuppressWarnings("unchecked")
+    private <S extends ConfigSetting<?>> S register(S setting) {
+        synchronized (writeLock) {
+            ConfigSetting<?> existing = settings.get(setting.getKey());
+            if (existing != null) {
+                if (existing.getClass() != setting.getClass() || !Objects.equals(existing.getDefaultValue(), setting.getDefaultValue()))
+                    throw new IllegalArgumentException(String.format("Configuration key \"%s\" was already declared as %s with default %s",
+                            setting.getKey(), existing.getClass().getSimpleName(), existing.getDefaultValue()));
+                return (S) existing;
+            }
+            ConfigSetting<?> declared = setting;
+            apply(declared, declared.parse(snapshot.get(setting.getKey())));
+            settings.put(setting.getKey(), setting);
+            return setting;
+        }
+    }
+
+    // The value was returned by the parse method of the same setting
+    @SuppressWarnings("unchecked")
+    private static <V> void apply(ConfigSetting<V> setting, Object value) {
+        setting.apply((V) value);
+    }
+
+    /**
+     * Reloads the file unless it holds the values last written or read by this instance,
+     * which is the case for the events caused by its own writes. Reloading those would
+     * discard the values set after the write.
+     */
+    private void reloadIfChanged() throws IOException {
+        synchronized (writeLock) {
+            Map<String, String> fromFile = readFile();
+            if (fromFile.equals(persisted))
+                return;
+            persisted = fromFile;
+            replace(merge(toMap(initialProps), fromFile));
+        }
+    }
+
+    private void watch(WatchService service, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context()) || event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        changed = true;
+                }
+                key.reset();
+                if (!changed)
+                    continue;
+                try {
+                    reloadIfChanged();
+                } catch (NoSuchFileException ex) {
+                    LOGGER.debug("Configuration file is being replaced, keeping current values");
+                } catch (Exception ex) {
+                    LOGGER.warn("Configuration file could not be reloaded, keeping current values", ex);
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.info(String.format("Stopped watching configuration file \"%s\"", file));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * Publishes the new values, if they differ from the current ones, updates the settings
+     * and notifies the listeners of the keys that were added, removed or changed. Every
+     * setting is parsed before anything is published, so an invalid value leaves both the
+     * values and the settings untouched. Must be called holding the write lock, so listeners
+     * get the changes in order.
+     * @throws IllegalArgumentException When the value of a setting is not valid
+     */
+    private void replace(Map<String, String> values) {
+        Map<String, String> previous = snapshot;
+        if (previous.equals(values))
+            return;
+        List<Object> parsed = new ArrayList<>(settings.size());
+        for (ConfigSetting<?> setting : settings.values())
+            parsed.add(setting.parse(values.get(setting.getKey())));
+        Map<String, String> current = Collections.unmodifiableMap(values);
+        snapshot = current;
+        int i = 0;
+        for (ConfigSetting<?> setting : settings.values())
+            apply(setting, parsed.get(i++));
+        Set<String> changedKeys = new HashSet<>(previous.keySet());
+        changedKeys.addAll(current.keySet());
+        for (String key : current.keySet()) {
+            if (current.get(key).equals(previous.get(key)))
+                changedKeys.remove(key);
+        }
+        changedKeys = Collections.unmodifiableSet(changedKeys);
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(this, changedKeys);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Configuration change listener failed", ex);
+            }
+        }
+    }
+
+    private Map<String, String> readFile() throws IOException {
+        Properties props = new Properties();
+        try (InputStream stream = Files.newInputStream(Paths.get(file))) {
+            props.load(stream);
+        }
+        return toMap(props);
+    }
+
+    /**
+     * Writes the values to a temporary file in the same directory, then moves it over the
+     * file, so other programs, and the watching thread, never read a partially written file.
+     */
+    private void writeFile(Map<String, String> values) throws IOException {
+        Properties props = new Properties();
+        props.putAll(values);
+        Path target = Paths.get(file).toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                props.store(stream, propsDescrip);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        persisted = values;
+    }
+
+    private static Map<String, String> toMap(Properties props) {
+        Map<String, String> values = new HashMap<>();
+        if (props != null) {
+            for (String key : props.stringPropertyNames())
+                values.put(key, props.getProperty(key));
+        }
+        return values;
+    }
+
+    private static Map<String, String> merge(Map<String, String> base, Map<String, String> overrides) {
+        Map<String, String> values = new HashMap<>(base);
+        values.putAll(overrides);
+        return values;
+    }
+    /**
+     * Receives the changes of the values of an {@link AppConfig}, e.g. to resize a
+     * connection pool when its settings change.
+     */
+    public static interface ChangeListener {
+        /**
+         * Called after the values changed, with the new ones already in place. It's
+         * called from the thread that made the change, which is the watching thread for
+         * changes made to the file, while holding the lock that serializes the changes, so
+         * it should return quickly.
+         * @param config The configuration that changed
+         * @param changedKeys Keys whose value was added, removed or changed
+         */
+        public void configurationChanged(AppConfig config, Set<String> changedKeys);
+    }
+}
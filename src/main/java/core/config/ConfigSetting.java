@@ -0,0 +1,324 @@
+package core.config;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Typed value of a single key of an {@link AppConfig}. Settings are created through the
+ * factory methods of the configuration, such as {@link AppConfig#intSetting(java.lang.String, int)
+ * intSetting}, and their value is parsed and validated whenever the configuration is
+ * loaded or changes, not when it's read: reading a setting is a plain field read, cheap
+ * enough for hot paths. A missing or blank value yields the default of the setting.
+ * <p>A value that can't be parsed makes the whole change fail: {@link AppConfig#load() load}
+ * and {@link AppConfig#setProperty(java.lang.String, java.lang.String) setProperty} throw
+ * an {@link IllegalArgumentException}, and a reload of the watched file is ignored, so
+ * settings never hold values that were rejected.</p>
+ * @author Rene Vera Apale
+ * @param <V> Type of the value
+ */
+public abstract class ConfigSetting<V> {
+
+    private final String key;
+    private final V defaultValue;
+
+    ConfigSetting(String key, V defaultValue) {
+        this.key = key;
+        this.defaultValue = defaultValue;
+    }
+    /**
+     * Returns the configuration key of this setting.
+     * @return the key
+     */
+    public String getKey() {
+        return key;
+    }
+    /**
+     * Returns the value used when the key is missing or blank.
+     * @return the default value
+     */
+    public V getDefaultValue() {
+        return defaultValue;
+    }
+    /**
+     * Returns the current value of the setting.
+     * @return the current value
+     */
+    public abstract V get();
+    /**
+     * Parses the raw value of the key, without applying it.
+     * @param raw Raw value, {@code null} if the key is missing
+     * @return The parsed value
+     * @throws IllegalArgumentException When the value is not valid
+     */
+    V parse(String raw) {
+        if (raw == null || raw.trim().isEmpty())
+            return defaultValue;
+        try {
+            return parseValue(raw.trim());
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException(String.format("Configuration key \"%s\" has an invalid value \"%s\": %s",
+                    key, raw, ex.getMessage()), ex);
+        }
+    }
+
+    abstract V parseValue(String raw);
+
+    abstract void apply(V value);
+
+    @Override
+    public String toString() {
+        return key + "=" + get();
+    }
+    /**
+     * Integer setting.
+     */
+    public static final class IntSetting extends ConfigSetting<Integer> {
+
+        private volatile int value;
+
+        IntSetting(String key, int defaultValue) {
+            super(key, defaultValue);
+            value = defaultValue;
+        }
+        /**
+         * Returns the current value of the setting, without boxing.
+         * @return the current value
+         */
+        public int getInt() {
+            return value;
+        }
+
+        @Override
+        public Integer get() {
+            return value;
+        }
+
+        @Override
+        Integer parseValue(String raw) {
+            return Integer.valueOf(raw);
+        }
+
+        @Override
+        void apply(Integer value) {
+            this.value = value;
+        }
+    }
+    /**
+     * Long integer setting.
+     */
+    public static final class LongSetting extends ConfigSetting<Long> {
+
+        private volatile long value;
+
+        LongSetting(String key, long defaultValue) {
+            super(key, defaultValue);
+            value = defaultValue;
+        }
+        /**
+         * Returns the current value of the setting, without boxing.
+         * @return the current value
+         */
+        public long getLong() {
+            return value;
+        }
+
+        @Override
+        public Long get() {
+            return value;
+        }
+
+        @Override
+        Long parseValue(String raw) {
+            return Long.valueOf(raw);
+        }
+
+        @Override
+        void apply(Long value) {
+            this.value = value;
+        }
+    }
+    /**
+     * Boolean setting. Only {@code true} and {@code false}, in any case, are valid values.
+     */
+    public static final class BooleanSetting extends ConfigSetting<Boolean> {
+
+        private volatile boolean value;
+
+        BooleanSetting(String key, boolean defaultValue) {
+            super(key, defaultValue);
+            value = defaultValue;
+        }
+        /**
+         * Returns the current value of the setting, without boxing.
+         * @return the current value
+         */
+        public boolean getBoolean() {
+            return value;
+        }
+
+        @Override
+        public Boolean get() {
+            return value;
+        }
+
+        @Override
+        Boolean parseValue(String raw) {
+            if (raw.equalsIgnoreCase("true"))
+                return Boolean.TRUE;
+            if (raw.equalsIgnoreCase("false"))
+                return Boolean.FALSE;
+            throw new IllegalArgumentException("expected true or false");
+        }
+
+        @Override
+        void apply(Boolean value) {
+            this.value = value;
+        }
+    }
+    /**
+     * Duration setting. Values are either ISO-8601 durations, such as {@code PT30S}, or a
+     * number followed by one of the units {@code ms}, {@code s}, {@code m}, {@code h} or
+     * {@code d}; a number alone is taken as milliseconds.
+     */
+    public static final class DurationSetting extends ConfigSetting<Duration> {
+
+        private volatile Duration value;
+        private volatile long millis;
+
+        DurationSetting(String key, Duration defaultValue) {
+            super(key, defaultValue);
+            apply(defaultValue);
+        }
+        /**
+         * Returns the current value of the setting in milliseconds, without any conversion.
+         * @return the current value in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public Duration get() {
+            return value;
+        }
+
+        @Override
+        Duration parseValue(String raw) {
+            if (raw.startsWith("P") || raw.startsWith("p")) {
+                try {
+                    return Duration.parse(raw);
+                } catch (DateTimeParseException ex) {
+                    throw new IllegalArgumentException("not an ISO-8601 duration", ex);
+                }
+            }
+            String lower = raw.toLowerCase(Locale.ROOT);
+            int unitStart = lower.length();
+            while (unitStart > 0 && Character.isLetter(lower.charAt(unitStart - 1)))
+                unitStart--;
+            long amount = Long.parseLong(lower.substring(0, unitStart).trim());
+            switch (lower.substring(unitStart)) {
+                case "":
+                case "ms":
+                    return Duration.ofMillis(amount);
+                case "s":
+                    return Duration.ofSeconds(amount);
+                case "m":
+                    return Duration.ofMinutes(amount);
+                case "h":
+                    return Duration.ofHours(amount);
+                case "d":
+                    return Duration.ofDays(amount);
+                default:
+                    throw new IllegalArgumentException("unknown unit, expected ms, s, m, h or d");
+            }
+        }
+
+        @Override
+        void apply(Duration value) {
+            this.millis = value.toMillis();
+            this.value = value;
+        }
+    }
+    /**
+     * Setting restricted to the constants of an enum, matched by name ignoring case.
+     * @param <E> Type of the enum
+     */
+    public static final class EnumSetting<E extends Enum<E>> extends ConfigSetting<E> {
+
+        private final Class<E> type;
+        private volatile E value;
+
+        EnumSetting(String key, Class<E> type, E defaultValue) {
+            super(key, defaultValue);
+            this.type = type;
+            value = defaultValue;
+        }
+        /**
+         * Returns the enum the values of the setting belong to.
+         * @return the type of the values
+         */
+        public Class<E> getType() {
+            return type;
+        }
+
+        @Override
+        public E get() {
+            return value;
+        }
+
+        @Override
+        E parseValue(String raw) {
+            for (E constant : type.getEnumConstants()) {
+                if (constant.name().equalsIgnoreCase(raw))
+                    return constant;
+            }
+            throw new IllegalArgumentException("expected one of " + Arrays.toString(type.getEnumConstants()));
+        }
+
+        @Override
+        void apply(E value) {
+            this.value = value;
+        }
+    }
+    /**
+     * Setting holding a list of strings, separated by commas in the raw value. Blank
+     * elements are dropped and the rest are trimmed.
+     */
+    public static final class ListSetting extends ConfigSetting<List<String>> {
+
+        private volatile List<String> value;
+
+        ListSetting(String key, List<String> defaultValue) {
+            super(key, Collections.unmodifiableList(new ArrayList<>(defaultValue)));
+            value = getDefaultValue();
+        }
+        /**
+         * Returns the current value of the setting.
+         * @return an unmodifiable list
+         */
+        @Override
+        public List<String> get() {
+            return value;
+        }
+
+        @Override
+        List<String> parseValue(String raw) {
+            List<String> elements = new ArrayList<>();
+            for (String element : raw.split(",")) {
+                if (!element.trim().isEmpty())
+                    elements.add(element.trim());
+            }
+            return Collections.unmodifiableList(elements);
+        }
+
+        @Override
+        void apply(List<String> value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package core.data.access.utils;
+
+import java.util.Collection;
+import org.hibernate.Query;
+import org.hibernate.Session;
+
+/**
+ * HQL query produced by a {@link QueryFilterCompiler}, along with the values that
+ * must be bound to its parameters.
+ * @author Rene Vera Apale
+ */
+public class CompiledQuery {
+
+    private final String hql;
+    private final Object[] parameters;
+
+    CompiledQuery(String hql, Object[] parameters) {
+        this.hql = hql;
+        this.parameters = parameters;
+    }
+    /**
+     * Returns the text of the query. Queries compiled from filters with the same shape
+     * share the same text instance.
+     * @return the HQL text
+     */
+    public String getHql() {
+        return hql;
+    }
+    /**
+     * Returns the values of the query parameters, in the order they appear in the text.
+     * Parameters are named {@code p0}, {@code p1} and so on.
+     * @return the values of the parameters
+     */
+    public Object[] getParameters() {
+        return parameters;
+    }
+    /**
+     * Creates the query in the specified session, with all of its parameters bound.
+     * @param session Session in which the query will be executed
+     * @return A {@link Query} ready to be executed
+     */
+    public Query createQuery(Session session) {
+        Query query = session.createQuery(hql);
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] instanceof Collection)
+                query.setParameterList("p" + i, (Collection) parameters[i]);
+            else
+                query.setParameter("p" + i, parameters[i]);
+        }
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return hql;
+    }
+}
@@ -0,0 +1,168 @@
+package core.data.access.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled, reflection-free getter for a property of a given class. Every accessor is
+ * resolved only once per class and property name, and kept in a global cache, so the
+ * expensive method lookup happens just the first time the property is requested.
+ * Afterwards reading a value is a direct {@link MethodHandle} invocation.
+ * <p>Properties are resolved with the same rules used by {@link core.gui.RichDataModel RichDataModel}:
+ * the name is prefixed with <i>get</i> (or <i>is</i> for boolean values) and matched,
+ * ignoring case, against the public no-argument methods of the class. When no <i>get</i>
+ * method exists, an <i>is</i> method returning {@code boolean} is looked up as well. Nested properties
+ * can be expressed with a dot, e.g. {@code customer.name}, in which case a {@code null}
+ * intermediate value yields {@code null}.</p>
+ * @author Rene Vera Apale
+ */
+public final class PropertyAccessor {
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyAccessor>> CACHE = new ConcurrentHashMap<>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> type;
+    private final String property;
+    private final MethodHandle getter;
+    private final Class<?> valueType;
+    private final PropertyAccessor next;
+
+    private PropertyAccessor(Class<?> type, String property, Method method, PropertyAccessor next) {
+        this.type = type;
+        this.property = property;
+        this.getter = unreflect(method);
+        this.valueType = method.getReturnType();
+        this.next = next;
+    }
+    /**
+     * Returns the accessor for the specified property of the specified class, using
+     * the <i>get</i> prefix, or the <i>is</i> prefix for {@code boolean} properties that
+     * have no <i>get</i> method, as {@link java.beans.Introspector Introspector} does.
+     * @param type Class that declares the property
+     * @param property Name of the property, as in {@code name} or {@code customer.name}
+     * @return A cached accessor for the property
+     * @throws IllegalArgumentException When no suitable public method is found
+     */
+    public static PropertyAccessor of(Class<?> type, String property) {
+        return of(type, property, false);
+    }
+    /**
+     * Returns the accessor for the specified property of the specified class.
+     * @param type Class that declares the property
+     * @param property Name of the property, as in {@code name} or {@code customer.name}
+     * @param booleanProperty {@code true} if the <i>is</i> prefix should be used to find
+     * the last property of the path, {@code false} to use the <i>get</i> prefix
+     * @return A cached accessor for the property
+     * @throws IllegalArgumentException When no suitable public method is found
+     */
+    public static PropertyAccessor of(Class<?> type, String property, boolean booleanProperty) {
+        ConcurrentMap<String, PropertyAccessor> byName = CACHE.get(type);
+        if (byName == null) {
+            ConcurrentMap<String, PropertyAccessor> created = new ConcurrentHashMap<>();
+            byName = CACHE.putIfAbsent(type, created);
+            if (byName == null)
+                byName = created;
+        }
+        String key = booleanProperty ? "is:" + property : property;
+        PropertyAccessor accessor = byName.get(key);
+        if (accessor == null) {
+            accessor = resolve(type, property, booleanProperty);
+            PropertyAccessor existing = byName.putIfAbsent(key, accessor);
+            if (existing != null)
+                accessor = existing;
+        }
+        return accessor;
+    }
+    /**
+     * Reads the value of the property from the specified object.
+     * @param target Object from which the value will be read. It must be an instance of
+     * the class this accessor was resolved for
+     * @return The value of the property
+     */
+    public Object get(Object target) {
+        Object value;
+        try {
+            value = (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+        if (next == null || value == null)
+            return value;
+        return next.get(value);
+    }
+    /**
+     * Returns the class this accessor was resolved for.
+     * @return the class declaring the property
+     */
+    public Class<?> getType() {
+        return type;
+    }
+    /**
+     * Returns the name of the property as it was requested.
+     * @return the name of the property
+     */
+    public String getProperty() {
+        return property;
+    }
+    /**
+     * Returns the declared type of the value, which for nested properties is the type
+     * of the last property of the path.
+     * @return the declared type of the value
+     */
+    public Class<?> getValueType() {
+        return next == null ? valueType : next.getValueType();
+    }
+
+    private static PropertyAccessor resolve(Class<?> type, String property, boolean booleanProperty) {
+        int dot = property.indexOf('.');
+        if (dot < 0)
+            return new PropertyAccessor(type, property, findGetter(type, property, booleanProperty), null);
+        String head = property.substring(0, dot);
+        Method method = findGetter(type, head, false);
+        PropertyAccessor next = of(method.getReturnType(), property.substring(dot + 1), booleanProperty);
+        return new PropertyAccessor(type, property, method, next);
+    }
+
+    private static Method findGetter(Class<?> type, String property, boolean booleanProperty) {
+        String requestedMethod = (booleanProperty ? "is" : "get") + property;
+        Method method = findMethod(type, requestedMethod);
+        if (method == null && !booleanProperty) {
+            method = findMethod(type, "is" + property);
+            if (method != null && method.getReturnType() != boolean.class)
+                method = null;
+        }
+        if (method == null)
+            throw new IllegalArgumentException("Method " + requestedMethod + " was not found in type " + type.getName());
+        return method;
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        for (Method method : type.getMethods()) {
+            if (method.getParameterTypes().length == 0 && method.getName().equalsIgnoreCase(name))
+                return method;
+        }
+        return null;
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException ex) {
+            // Public methods declared in non-public classes (e.g. proxies) need access checks suppressed
+            method.setAccessible(true);
+            try {
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException iex) {
+                throw new IllegalArgumentException("Method " + method.getName() + " is not accessible", iex);
+            }
+        }
+        return handle.asType(GETTER_TYPE);
+    }
+}
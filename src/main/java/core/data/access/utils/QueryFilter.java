@@ -190,7 +190,7 @@ public class QueryFilter {
      * @return A {@link QueryFilter} instance representing the {@code lowerThanProperty} condition
      */
     public static QueryFilter lowerThanProperty(String property, String otherProperty) {
-        return new QueryFilter(property, Type.LTP, property);
+        return new QueryFilter(property, Type.LTP, otherProperty);
     }
     /**
      * Create a {@code notEqual} restriction
@@ -228,6 +228,15 @@ public class QueryFilter {
     public Object getValue() {
         return value;
     }
+    /**
+     * Returns the filters grouped by a {@link Type#CONJ Type.CONJ} or {@link Type#DISJ Type.DISJ}
+     * filter, which {@link #and(java.util.List) and} and {@link #or(java.util.List) or} only
+     * accept as a {@link List} of {@link QueryFilter} objects.
+     */
+    @SuppressWarnings("unchecked")
+    List<QueryFilter> getConditions() {
+        return (List<QueryFilter>) value;
+    }
     /**
      * Returns the name that displays when this filter is used in a GUI component.
      * @return 
@@ -253,7 +262,7 @@ public class QueryFilter {
     @Override
     public int hashCode() {
         int hash = 3;
-        hash = 89 * hash + property.hashCode();
+        hash = 89 * hash + (property != null ? property.hashCode() : 0);
         hash = 89 * hash + queryType.hashCode();
         return hash;
     }
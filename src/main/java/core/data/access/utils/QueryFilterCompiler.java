@@ -0,0 +1,417 @@
+package core.data.access.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates lists of {@link QueryFilter} objects into parameterized HQL queries over
+ * a single entity. The text of every query is cached by the <i>shape</i> of its filters,
+ * that is their types, properties and nesting, but not their values; so repeating a
+ * search only walks the filters to collect the values to bind, and Hibernate and the
+ * database get the exact same statement every time, allowing both to reuse their
+ * prepared plans. Up to a fixed number of query texts is cached, the least recently used
+ * being discarded first.
+ * <p>Property names, including nested paths, the ordering property and the properties
+ * compared by {@link QueryFilter.Type#GTP GTP} and {@link QueryFilter.Type#LTP LTP} filters,
+ * are written into the query text, so they're checked to be plain identifiers separated
+ * by dots before anything is compiled; any other text is rejected with an
+ * {@link IllegalArgumentException}. Hibernate then resolves every name against the mapping
+ * of the entity when it parses the query. Values are always bound as parameters.</p>
+ * <p>{@link QueryFilter.Type#EQ EQ} and {@link QueryFilter.Type#NEQ NEQ} filters with a
+ * {@code null} value are compiled to {@code is null} and {@code is not null}, since an
+ * SQL comparison against {@code null} matches nothing. Such filters have a shape of their
+ * own, so they never share a plan with the ones that compare against a value.</p>
+ * <p>The entity is always aliased as {@value #ALIAS}.</p>
+ * @author Rene Vera Apale
+ */
+public class QueryFilterCompiler {
+    /**
+     * Alias given to the queried entity in every generated query.
+     */
+    public static final String ALIAS = "e";
+    /**
+     * Number of query texts cached by default.
+     */
+    public static final int DEFAULT_MAX_PLANS = 256;
+
+    private final String entityName;
+    private final LinkedHashMap<String, String> plans;
+    /**
+     * Initializes a compiler for the specified entity, caching up to {@value #DEFAULT_MAX_PLANS}
+     * query texts.
+     * @param entityName Name of the entity as known by HQL, usually the fully qualified
+     * name of the mapped class
+     */
+    public QueryFilterCompiler(String entityName) {
+        this(entityName, DEFAULT_MAX_PLANS);
+    }
+    /**
+     * Initializes a compiler for the specified entity.
+     * @param entityName Name of the entity as known by HQL, usually the fully qualified
+     * name of the mapped class
+     * @param maxPlans Maximum number of query texts cached at any time
+     */
+    public QueryFilterCompiler(String entityName, final int maxPlans) {
+        if (maxPlans < 1)
+            throw new IllegalArgumentException("Maximum number of plans must be greater than zero");
+        this.entityName = entityName;
+        this.plans = new LinkedHashMap<String, String>(Math.min(maxPlans, 64) * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxPlans;
+            }
+        };
+    }
+    /**
+     * Compiles a query that selects the entities matching the filters.
+     * @param filters Restrictions for the search, may be {@code null}
+     * @param orderBy Name of the property to order the results over, pass {@code null}
+     * if no explicit ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @return The compiled query
+     */
+    public CompiledQuery select(List<QueryFilter> filters, String orderBy, boolean ascending) {
+        return compile(Kind.SELECT, filters, null, orderBy, ascending, null, null, null);
+    }
+    /**
+     * Compiles a query that selects the entities matching the filters with a stable
+     * order, suitable for pagination: entities with the same {@code orderBy} value are
+     * further ordered by {@code idProperty}.
+     * @param filters Restrictions for the search, may be {@code null}
+     * @param orderBy Name of the property to order the results over, pass {@code null}
+     * to order only by {@code idProperty}
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param idProperty Name of the identifier property of the entity
+     * @return The compiled query
+     */
+    public CompiledQuery selectPage(List<QueryFilter> filters, String orderBy, boolean ascending, String idProperty) {
+        return compile(Kind.PAGE, filters, null, orderBy, ascending, idProperty, null, null);
+    }
+    /**
+     * Compiles a query that selects the entities matching the filters that follow the
+     * specified values, with the same ordering as {@link #selectPage(java.util.List, java.lang.String, boolean, java.lang.String)
+     * selectPage}.
+     * @param filters Restrictions for the search, may be {@code null}
+     * @param orderBy Name of the property to order the results over, pass {@code null}
+     * to order only by {@code idProperty}
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param idProperty Name of the identifier property of the entity
+     * @param lastValue Value of {@code orderBy} of the last entity seen, ignored if
+     * {@code orderBy} is {@code null}
+     * @param lastId Identifier of the last entity seen
+     * @return The compiled query
+     */
+    public CompiledQuery selectAfter(List<QueryFilter> filters, String orderBy, boolean ascending, String idProperty,
+            Object lastValue, Object lastId) {
+        return compile(Kind.SEEK, filters, null, orderBy, ascending, idProperty, lastValue, lastId);
+    }
+    /**
+     * Compiles a query that selects only the specified properties of the entities matching
+     * the filters. Every row of the result holds the values of the properties, in the same
+     * order; when a single property is requested Hibernate returns the bare values instead.
+     * Nested properties, such as {@code customer.name}, are reached through left joins, so
+     * entities with a {@code null} association are still returned, with {@code null} values.
+     * @param filters Restrictions for the search, may be {@code null}
+     * @param properties Names of the properties to select, at least one
+     * @param orderBy Name of the property to order the results over, pass {@code null}
+     * if no explicit ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @return The compiled query
+     */
+    public CompiledQuery selectProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending) {
+        if (properties == null || properties.isEmpty())
+            throw new IllegalArgumentException("At least one property must be selected");
+        return compile(Kind.PROJECTION, filters, properties, orderBy, ascending, null, null, null);
+    }
+    /**
+     * Compiles a query that counts the entities matching the filters.
+     * @param filters Restrictions for the search, may be {@code null}
+     * @return The compiled query, which returns a single {@link Long} value
+     */
+    public CompiledQuery count(List<QueryFilter> filters) {
+        return compile(Kind.COUNT, filters, null, null, true, null, null, null);
+    }
+    /**
+     * Returns the number of distinct query texts compiled so far.
+     * @return the number of cached plans
+     */
+    public int getPlanCount() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    private CompiledQuery compile(Kind kind, List<QueryFilter> filters, List<String> properties, String orderBy,
+            boolean ascending, String idProperty, Object lastValue, Object lastId) {
+        checkPath(orderBy);
+        checkPath(idProperty);
+        if (properties != null) {
+            for (String property : properties)
+                checkPath(property);
+        }
+        StringBuilder key = new StringBuilder(64).append(kind.ordinal()).append('|');
+        List<Object> values = new ArrayList<>();
+        if (filters != null) {
+            for (QueryFilter filter : filters)
+                appendShape(key, values, filter);
+        }
+        key.append('|').append(orderBy).append('|').append(ascending).append('|').append(idProperty);
+        if (properties != null)
+            key.append('|').append(properties);
+        if (kind == Kind.SEEK) {
+            if (orderBy != null)
+                values.add(lastValue);
+            values.add(lastId);
+        }
+        String cacheKey = key.toString();
+        String hql;
+        synchronized (plans) {
+            hql = plans.get(cacheKey);
+        }
+        if (hql == null) {
+            hql = buildQuery(kind, filters, properties, orderBy, ascending, idProperty);
+            synchronized (plans) {
+                plans.put(cacheKey, hql);
+            }
+        }
+        return new CompiledQuery(hql, values.toArray());
+    }
+    /**
+     * Checks that the path is made of identifiers separated by dots, so it can be written
+     * into a query as is.
+     * @param path Property name or nested path, {@code null} is accepted
+     * @throws IllegalArgumentException When the path holds anything else
+     */
+    private static void checkPath(Object path) {
+        if (path == null)
+            return;
+        String text = String.valueOf(path);
+        boolean valid = !text.isEmpty();
+        boolean segmentStart = true;
+        for (int i = 0; valid && i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                valid = !segmentStart;
+                segmentStart = true;
+            } else if (segmentStart) {
+                valid = isIdentifierStart(c);
+                segmentStart = false;
+            } else {
+                valid = isIdentifierStart(c) || (c >= '0' && c <= '9');
+            }
+        }
+        if (!valid || segmentStart)
+            throw new IllegalArgumentException(String.format("\"%s\" is not a valid property name", text));
+    }
+
+    private static Object requirePath(Object path) {
+        if (path == null)
+            throw new IllegalArgumentException("Property name can't be null");
+        return path;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+    /**
+     * Appends the shape of the filter to the key, and its values (if any) to the list,
+     * in the same order in which {@link #appendCondition(java.lang.StringBuilder, int[], core.data.access.utils.QueryFilter)
+     * appendCondition} declares the parameters.
+     */
+    private static void appendShape(StringBuilder key, List<Object> values, QueryFilter filter) {
+        QueryFilter.Type type = filter.getQueryType();
+        key.append(type.name());
+        if (type != QueryFilter.Type.CONJ && type != QueryFilter.Type.DISJ)
+            checkPath(requirePath(filter.getProperty()));
+        switch (type) {
+            case CONJ:
+            case DISJ:
+                key.append('(');
+                for (QueryFilter condition : filter.getConditions())
+                    appendShape(key, values, condition);
+                key.append(')');
+                return;
+            case GTP:
+            case LTP:
+                checkPath(requirePath(filter.getValue()));
+                key.append(':').append(filter.getProperty()).append(':').append(filter.getValue());
+                break;
+            case IS_NULL:
+            case INN:
+                key.append(':').append(filter.getProperty());
+                break;
+            case IN:
+                Collection<?> inValues = (Collection<?>) filter.getValue();
+                key.append(inValues.isEmpty() ? "0:" : ":").append(filter.getProperty());
+                if (!inValues.isEmpty())
+                    values.add(inValues);
+                break;
+            case LK:
+                key.append(':').append(filter.getProperty());
+                values.add("%" + String.valueOf(filter.getValue()).toLowerCase() + "%");
+                break;
+            case EQ:
+            case NEQ:
+                key.append(':').append(filter.getProperty());
+                if (filter.getValue() == null)
+                    key.append(":null");
+                else
+                    values.add(filter.getValue());
+                break;
+            default:
+                key.append(':').append(filter.getProperty());
+                values.add(filter.getValue());
+        }
+        key.append(';');
+    }
+
+    private String buildQuery(Kind kind, List<QueryFilter> filters, List<String> properties, String orderBy,
+            boolean ascending, String idProperty) {
+        StringBuilder hql = new StringBuilder(128);
+        if (kind == Kind.COUNT)
+            hql.append("select count(*) ");
+        StringBuilder joins = new StringBuilder();
+        if (kind == Kind.PROJECTION)
+            appendProjection(hql, joins, properties);
+        hql.append("from ").append(entityName).append(' ').append(ALIAS).append(joins);
+        int[] param = {0};
+        String glue = " where ";
+        if (filters != null) {
+            for (QueryFilter filter : filters) {
+                hql.append(glue);
+                appendCondition(hql, param, filter);
+                glue = " and ";
+            }
+        }
+        if (kind == Kind.SEEK) {
+            String comparison = ascending ? " > " : " < ";
+            hql.append(glue).append('(');
+            if (orderBy != null) {
+                String lastValue = ":p" + param[0]++;
+                hql.append(ALIAS).append('.').append(orderBy).append(comparison).append(lastValue)
+                   .append(" or (").append(ALIAS).append('.').append(orderBy).append(" = ").append(lastValue).append(" and ");
+            }
+            hql.append(ALIAS).append('.').append(idProperty).append(comparison).append(":p").append(param[0]++);
+            if (orderBy != null)
+                hql.append(')');
+            hql.append(')');
+        }
+        if (kind != Kind.COUNT) {
+            String direction = ascending ? " asc" : " desc";
+            String orderGlue = " order by ";
+            if (orderBy != null) {
+                hql.append(orderGlue).append(ALIAS).append('.').append(orderBy).append(direction);
+                orderGlue = ", ";
+            }
+            if (idProperty != null)
+                hql.append(orderGlue).append(ALIAS).append('.').append(idProperty).append(direction);
+        }
+        return hql.toString();
+    }
+
+    /**
+     * Appends the select clause of a projection. Every association traversed by a nested
+     * property is left joined once, with an alias of its own, and the property is read
+     * from the alias of its last association.
+     */
+    private static void appendProjection(StringBuilder hql, StringBuilder joins, List<String> properties) {
+        Map<String, String> aliases = new HashMap<>();
+        hql.append("select ");
+        for (int i = 0; i < properties.size(); i++) {
+            String[] path = properties.get(i).split("\\.");
+            String alias = ALIAS;
+            String association = "";
+            for (int j = 0; j < path.length - 1; j++) {
+                association += path[j] + '.';
+                String joined = aliases.get(association);
+                if (joined == null) {
+                    joined = "j" + aliases.size();
+                    aliases.put(association, joined);
+                    joins.append(" left join ").append(alias).append('.').append(path[j]).append(' ').append(joined);
+                }
+                alias = joined;
+            }
+            if (i > 0)
+                hql.append(", ");
+            hql.append(alias).append('.').append(path[path.length - 1]);
+        }
+        hql.append(' ');
+    }
+
+    private static void appendCondition(StringBuilder hql, int[] param, QueryFilter filter) {
+        String property = ALIAS + "." + filter.getProperty();
+        switch (filter.getQueryType()) {
+            case EQ:
+                if (filter.getValue() == null)
+                    hql.append(property).append(" is null");
+                else
+                    hql.append(property).append(" = :p").append(param[0]++);
+                break;
+            case LK:
+                hql.append("lower(").append(property).append(") like :p").append(param[0]++);
+                break;
+            case GT:
+                hql.append(property).append(" > :p").append(param[0]++);
+                break;
+            case GTP:
+                hql.append(property).append(" > ").append(ALIAS).append('.').append(filter.getValue());
+                break;
+            case GE:
+                hql.append(property).append(" >= :p").append(param[0]++);
+                break;
+            case LT:
+                hql.append(property).append(" < :p").append(param[0]++);
+                break;
+            case LE:
+                hql.append(property).append(" <= :p").append(param[0]++);
+                break;
+            case IS_NULL:
+                hql.append(property).append(" is null");
+                break;
+            case INN:
+                hql.append(property).append(" is not null");
+                break;
+            case CONJ:
+            case DISJ:
+                List<QueryFilter> conditions = filter.getConditions();
+                if (conditions.isEmpty()) {
+                    hql.append(filter.getQueryType() == QueryFilter.Type.CONJ ? "1 = 1" : "1 = 0");
+                    break;
+                }
+                String glue = filter.getQueryType() == QueryFilter.Type.CONJ ? " and " : " or ";
+                hql.append('(');
+                for (int i = 0; i < conditions.size(); i++) {
+                    if (i > 0)
+                        hql.append(glue);
+                    appendCondition(hql, param, conditions.get(i));
+                }
+                hql.append(')');
+                break;
+            case IN:
+                if (((Collection) filter.getValue()).isEmpty())
+                    hql.append("1 = 0");
+                else
+                    hql.append(property).append(" in (:p").append(param[0]++).append(')');
+                break;
+            case LTP:
+                hql.append(property).append(" < ").append(ALIAS).append('.').append(filter.getValue());
+                break;
+            case NEQ:
+                if (filter.getValue() == null)
+                    hql.append(property).append(" is not null");
+                else
+                    hql.append(property).append(" <> :p").append(param[0]++);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported filter type " + filter.getQueryType());
+        }
+    }
+
+    private static enum Kind {
+        SELECT, PAGE, SEEK, COUNT, PROJECTION
+    }
+}
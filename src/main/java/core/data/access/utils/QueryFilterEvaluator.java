@@ -0,0 +1,282 @@
+package core.data.access.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates a list of {@link QueryFilter} objects against objects already in memory,
+ * following the same semantics the database would apply to the queries of a
+ * {@link QueryFilterCompiler}: every filter of the list must match, {@link QueryFilter.Type#EQ EQ}
+ * and {@link QueryFilter.Type#NEQ NEQ} against {@code null} behave like {@code is null}
+ * and {@code is not null}, other comparisons against {@code null} never match, {@link QueryFilter.Type#LK LK}
+ * is a case insensitive "contains", and numbers are compared by value regardless of
+ * their class.
+ * <p>The filters are compiled once into a tree of conditions, and every property is
+ * read through a cached {@link PropertyAccessor}, so evaluating a row doesn't involve
+ * any reflective lookup. Instances are immutable and can be shared between threads.</p>
+ * @author Rene Vera Apale
+ */
+public class QueryFilterEvaluator {
+
+    private final Condition condition;
+
+    private QueryFilterEvaluator(Condition condition) {
+        this.condition = condition;
+    }
+    /**
+     * Compiles the specified filters.
+     * @param filters Restrictions that every matching object must satisfy. An empty
+     * list or {@code null} matches every object
+     * @return An evaluator for the filters
+     */
+    public static QueryFilterEvaluator compile(List<QueryFilter> filters) {
+        List<Condition> conditions = new ArrayList<>();
+        if (filters != null) {
+            for (QueryFilter filter : filters)
+                conditions.add(toCondition(filter));
+        }
+        return new QueryFilterEvaluator(new Group(conditions, true));
+    }
+    /**
+     * Indicates whether the specified object satisfies the filters.
+     * @param record Object to evaluate
+     * @return {@code true} if every filter matches, {@code false} otherwise
+     */
+    public boolean matches(Object record) {
+        return record != null && condition.matches(record);
+    }
+    /**
+     * Returns the objects of the specified list that satisfy the filters, in the same order.
+     * @param <T> Type of the objects
+     * @param records Objects to evaluate
+     * @return A new list with the matching objects
+     */
+    public <T> List<T> filter(List<T> records) {
+        List<T> matching = new ArrayList<>();
+        for (T record : records) {
+            if (matches(record))
+                matching.add(record);
+        }
+        return matching;
+    }
+
+    private static Condition toCondition(QueryFilter filter) {
+        switch (filter.getQueryType()) {
+            case CONJ:
+            case DISJ:
+                List<Condition> conditions = new ArrayList<>();
+                for (QueryFilter nested : filter.getConditions())
+                    conditions.add(toCondition(nested));
+                return new Group(conditions, filter.getQueryType() == QueryFilter.Type.CONJ);
+            case LK:
+                return new Contains(filter.getProperty(), String.valueOf(filter.getValue()));
+            case IN:
+                return new In(filter.getProperty(), (Collection<?>) filter.getValue());
+            case GTP:
+            case LTP:
+                return new PropertyComparison(filter.getProperty(), filter.getQueryType(), (String) filter.getValue());
+            default:
+                return new ValueComparison(filter.getProperty(), filter.getQueryType(), filter.getValue());
+        }
+    }
+    /**
+     * Compares two values. Numbers are compared by value even if their classes differ,
+     * anything else must be mutually {@link Comparable}.
+     */
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number && left.getClass() != right.getClass())
+            return toBigDecimal((Number) left).compareTo(toBigDecimal((Number) right));
+        // Values that aren't mutually comparable make compareTo throw a ClassCastException
+        @SuppressWarnings("unchecked")
+        Comparable<Object> comparable = (Comparable<Object>) left;
+        return comparable.compareTo(right);
+    }
+
+    private static boolean equal(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number && left.getClass() != right.getClass())
+            return compare(left, right) == 0;
+        return left.equals(right);
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal)
+            return (BigDecimal) number;
+        if (number instanceof BigInteger)
+            return new BigDecimal((BigInteger) number);
+        if (number instanceof Double || number instanceof Float)
+            return BigDecimal.valueOf(number.doubleValue());
+        return BigDecimal.valueOf(number.longValue());
+    }
+    /**
+     * Single node of the compiled filter tree.
+     */
+    private static abstract class Condition {
+
+        abstract boolean matches(Object record);
+    }
+    /**
+     * Reads a property, remembering the accessor resolved for the last class it was
+     * used with.
+     */
+    private static class PropertyReader {
+
+        private final String property;
+        private volatile PropertyAccessor accessor;
+
+        PropertyReader(String property) {
+            this.property = property;
+        }
+
+        Object read(Object record) {
+            PropertyAccessor current = accessor;
+            if (current == null || current.getType() != record.getClass()) {
+                current = PropertyAccessor.of(record.getClass(), property);
+                accessor = current;
+            }
+            return current.get(record);
+        }
+    }
+
+    private static class Group extends Condition {
+
+        private final Condition[] conditions;
+        private final boolean conjunction;
+
+        Group(List<Condition> conditions, boolean conjunction) {
+            this.conditions = conditions.toArray(new Condition[conditions.size()]);
+            this.conjunction = conjunction;
+        }
+
+        @Override
+        boolean matches(Object record) {
+            for (Condition condition : conditions) {
+                if (condition.matches(record) != conjunction)
+                    return !conjunction;
+            }
+            return conjunction;
+        }
+    }
+
+    private static class ValueComparison extends Condition {
+
+        private final PropertyReader reader;
+        private final QueryFilter.Type type;
+        private final Object value;
+
+        ValueComparison(String property, QueryFilter.Type type, Object value) {
+            this.reader = new PropertyReader(property);
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        boolean matches(Object record) {
+            Object actual = reader.read(record);
+            switch (type) {
+                case IS_NULL:
+                    return actual == null;
+                case INN:
+                    return actual != null;
+                case EQ:
+                    if (value == null)
+                        return actual == null;
+                    break;
+                case NEQ:
+                    if (value == null)
+                        return actual != null;
+                    break;
+            }
+            if (actual == null || value == null)
+                return false;
+            switch (type) {
+                case EQ:
+                    return equal(actual, value);
+                case NEQ:
+                    return !equal(actual, value);
+                case GT:
+                    return compare(actual, value) > 0;
+                case GE:
+                    return compare(actual, value) >= 0;
+                case LT:
+                    return compare(actual, value) < 0;
+                case LE:
+                    return compare(actual, value) <= 0;
+                default:
+                    throw new IllegalArgumentException("Unsupported filter type " + type);
+            }
+        }
+    }
+
+    private static class PropertyComparison extends Condition {
+
+        private final PropertyReader reader;
+        private final PropertyReader other;
+        private final boolean greater;
+
+        PropertyComparison(String property, QueryFilter.Type type, String otherProperty) {
+            this.reader = new PropertyReader(property);
+            this.other = new PropertyReader(otherProperty);
+            this.greater = type == QueryFilter.Type.GTP;
+        }
+
+        @Override
+        boolean matches(Object record) {
+            Object actual = reader.read(record);
+            Object otherValue = other.read(record);
+            if (actual == null || otherValue == null)
+                return false;
+            int comparison = compare(actual, otherValue);
+            return greater ? comparison > 0 : comparison < 0;
+        }
+    }
+
+    private static class Contains extends Condition {
+
+        private final PropertyReader reader;
+        private final String fragment;
+
+        Contains(String property, String fragment) {
+            this.reader = new PropertyReader(property);
+            this.fragment = fragment.toLowerCase();
+        }
+
+        @Override
+        boolean matches(Object record) {
+            Object actual = reader.read(record);
+            return actual != null && actual.toString().toLowerCase().contains(fragment);
+        }
+    }
+
+    private static class In extends Condition {
+
+        private final PropertyReader reader;
+        private final Set<Object> values;
+        private final Set<BigDecimal> numbers;
+
+        In(String property, Collection<?> values) {
+            this.reader = new PropertyReader(property);
+            this.values = new HashSet<>(values);
+            this.numbers = new HashSet<>();
+            for (Object value : values) {
+                if (value instanceof Number)
+                    numbers.add(toBigDecimal((Number) value).stripTrailingZeros());
+            }
+        }
+
+        @Override
+        boolean matches(Object record) {
+            Object actual = reader.read(record);
+            if (actual == null)
+                return false;
+            if (values.contains(actual))
+                return true;
+            return actual instanceof Number && !numbers.isEmpty()
+                    && numbers.contains(toBigDecimal((Number) actual).stripTrailingZeros());
+        }
+    }
+}
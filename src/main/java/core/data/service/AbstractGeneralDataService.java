@@ -0,0 +1,582 @@
+package core.data.service;
+
+import core.data.access.utils.CompiledQuery;
+import core.data.access.utils.PropertyAccessor;
+import core.data.access.utils.QueryFilter;
+import core.data.access.utils.QueryFilterCompiler;
+import core.data.session.AbstractDataSession;
+import core.data.session.AbstractTransactionOperation;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javax.transaction.Synchronization;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+
+/**
+ * Hibernate based implementation of {@link IExtendedDataService} for a single entity
+ * type. Every operation runs in the current session of the specified {@link AbstractDataSession},
+ * joining its active transaction or using a new one when there's none; reads outside a
+ * transaction are routed to the read-only replicas of the session, if it has any. Searches are
+ * translated to HQL through a {@link QueryFilterCompiler}, so they're only built once
+ * for every shape of filters, and their results can be kept in a {@link QueryResultCache}.
+ * @author Rene Vera Apale
+ * @param <T> Type of the entity managed by this service
+ */
+public abstract class AbstractGeneralDataService<T> implements IExtendedDataService<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+
+    protected final AbstractDataSession dataSession;
+    protected final Class<T> entityType;
+    protected final QueryFilterCompiler compiler;
+    private String idProperty;
+    private int fetchSize = 500;
+    private int clearInterval = 500;
+    private int batchSize = 50;
+    private volatile QueryResultCache queryCache;
+    /**
+     * Initializes the service for the specified entity type.
+     * @param dataSession Data session through which the database is accessed
+     * @param entityType Mapped class of the entity managed by this service
+     */
+    public AbstractGeneralDataService(AbstractDataSession dataSession, Class<T> entityType) {
+        this.dataSession = dataSession;
+        this.entityType = entityType;
+        this.compiler = new QueryFilterCompiler(entityType.getName());
+    }
+    /**
+     * Sets the JDBC fetch size used when streaming records through
+     * {@link #scrollRecords(java.util.List, java.lang.String, boolean, core.data.service.IRecordVisitor) scrollRecords}.
+     * Some drivers need a specific value to actually stream the results, e.g. MySQL
+     * requires {@link Integer#MIN_VALUE Integer.MIN_VALUE}.
+     * @param fetchSize Number of rows fetched from the database in each round-trip
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+    /**
+     * Returns the JDBC fetch size used when streaming records.
+     * @return the JDBC fetch size
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+    /**
+     * Sets how many records are visited between every clearing of the streaming session.
+     * @param clearInterval Number of records kept in the session at most
+     */
+    public void setClearInterval(int clearInterval) {
+        if (clearInterval < 1)
+            throw new IllegalArgumentException("Clear interval must be greater than zero");
+        this.clearInterval = clearInterval;
+    }
+    /**
+     * Returns how many records are visited between every clearing of the streaming session.
+     * @return the number of records kept in the session at most
+     */
+    public int getClearInterval() {
+        return clearInterval;
+    }
+
+    /**
+     * Sets how many records are written by bulk operations in a single transaction, after
+     * which the session is flushed and cleared. It should match the {@code hibernate.jdbc.batch_size} setting of the
+     * session factory, so every flush sends exactly one JDBC batch per statement. Note that
+     * Hibernate doesn't batch inserts of entities with {@code IDENTITY} generated IDs, and
+     * that entities loaded in the current session are detached every time it's cleared.
+     * @param batchSize Number of records between every flush
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        this.batchSize = batchSize;
+    }
+    /**
+     * Returns how many records are written by bulk operations in a single transaction.
+     * @return the number of records between every flush
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the cache that keeps the results of the searches of this service: lists, pages
+     * and counts, keyed by the compiled query, so by the shape and values of the filters
+     * and the ordering. Searches run within an active transaction bypass the cache. Every
+     * write of this service invalidates the results of its entity type, both when issued
+     * and when its transaction completes; writes done by other means, or to other entity
+     * types the results depend on, are not detected.
+     * <p>Cached lists are copied when returned, but the entities they hold are shared by
+     * every caller.</p>
+     * @param queryCache The cache to use, possibly shared with other services, or {@code null}
+     * to disable caching, which is the default
+     */
+    public void setQueryCache(QueryResultCache queryCache) {
+        this.queryCache = queryCache;
+    }
+    /**
+     * Returns the cache that keeps the results of the searches of this service.
+     * @return the cache, or {@code null} if caching is disabled
+     */
+    public QueryResultCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Runs through {@link AbstractDataSession#executeGrouped(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeGrouped}, so concurrent writes share a transaction when group commit is enabled.
+     */
+    @Override
+    public T createOrUpdate(T record) throws Exception {
+        dataSession.executeGrouped(new RecordWrite(false), record);
+        return record;
+    }
+    /**
+     * Runs through {@link AbstractDataSession#executeGrouped(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeGrouped}, so concurrent writes share a transaction when group commit is enabled.
+     */
+    @Override
+    public void delete(T record) throws Exception {
+        dataSession.executeGrouped(new RecordWrite(true), record);
+    }
+
+    /**
+     * Writes the records in chunks of {@link #getBatchSize() getBatchSize()} records, each
+     * chunk in a transaction of its own. When a chunk fails, its transaction is rolled back,
+     * its session is discarded, and its records are written again one per transaction, each
+     * in a new session, so only the records that fail on their own are reported as failures;
+     * the chunks committed before are kept.
+     * <p>When called within an active transaction the records are written in that transaction
+     * instead, still flushing and clearing the session every {@link #getBatchSize() getBatchSize()}
+     * records. This path is all-or-nothing: there's no reporting of rejected records, the
+     * first error is thrown and the caller must roll back the transaction, since it can't be
+     * used after a failed write.</p>
+     */
+    @Override
+    public BatchResult<T> createOrUpdateAll(Collection<T> records) throws Exception {
+        return writeAll(records, false);
+    }
+    /**
+     * Deletes the records in chunks, like {@link #createOrUpdateAll(java.util.Collection) createOrUpdateAll}.
+     */
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> records) throws Exception {
+        return writeAll(records, true);
+    }
+
+    private BatchResult<T> writeAll(Collection<T> records, boolean delete) throws Exception {
+        BatchResult<T> result = new BatchResult<>();
+        if (dataSession.isTransactionActive()) {
+            List<T> all = new ArrayList<>(records);
+            writeChunk(all, newWrites(all.size(), delete));
+            for (int i = 0; i < all.size(); i++)
+                result.addSuccess();
+            return result;
+        }
+        List<T> chunk = new ArrayList<>(batchSize);
+        for (T record : records) {
+            chunk.add(record);
+            if (chunk.size() == batchSize) {
+                writeIsolated(chunk, delete, result);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty())
+            writeIsolated(chunk, delete, result);
+        return result;
+    }
+    /**
+     * Writes a chunk in a transaction of its own, falling back to one transaction per record
+     * when the chunk fails.
+     */
+    private void writeIsolated(List<T> chunk, boolean delete, BatchResult<T> result) throws Exception {
+        List<RecordWrite> writes = newWrites(chunk.size(), delete);
+        try {
+            writeChunk(chunk, writes);
+            for (int i = 0; i < chunk.size(); i++)
+                result.addSuccess();
+            return;
+        } catch (Exception ex) {
+            discardSession();
+            LOGGER.debug(String.format("Chunk of %d records failed, writing them one at a time", chunk.size()), ex);
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                dataSession.executeInTransaction(writes.get(i), chunk.get(i));
+                result.addSuccess();
+            } catch (Exception ex) {
+                discardSession();
+                result.addFailure(chunk.get(i), ex);
+            }
+        }
+    }
+    /**
+     * Creates an operation for every record of a chunk. The same operations are used to
+     * write the records again after a rollback, since they restore the identifiers and
+     * versions assigned to the records by the failed transaction.
+     */
+    private List<RecordWrite> newWrites(int count, boolean delete) {
+        List<RecordWrite> writes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            writes.add(new RecordWrite(delete));
+        return writes;
+    }
+    /**
+     * Writes every record of the chunk in a single transaction, flushing and clearing the
+     * session every {@link #getBatchSize() getBatchSize()} records and at the end. The
+     * cached results are invalidated once for the whole chunk.
+     */
+    private void writeChunk(final List<T> chunk, final List<RecordWrite> writes) throws Exception {
+        dataSession.executeInTransaction(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                Session session = dataSession.getCurrentSession();
+                invalidateOnCompletion();
+                for (int i = 0; i < chunk.size(); i++) {
+                    writes.get(i).write(session, chunk.get(i));
+                    if ((i + 1) % batchSize == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                if (chunk.size() % batchSize != 0) {
+                    session.flush();
+                    session.clear();
+                }
+                return null;
+            }
+        });
+    }
+    /**
+     * Releases the session of the calling thread after a failed write, so the next write
+     * uses a new one.
+     */
+    private void discardSession() {
+        try {
+            dataSession.releaseCurrentSession();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Session of a failed write could not be released", ex);
+        }
+    }
+
+    /**
+     * Inserts the records through a stateless session, in a single transaction. Unlike
+     * {@link #createOrUpdateAll(java.util.Collection) createOrUpdateAll}, records aren't kept
+     * in any persistence context, so memory use doesn't grow with the number of records;
+     * the records can be produced lazily by the iterable, making this method suitable for
+     * loads of millions of rows. There are no cascades, and any failure rolls back the
+     * whole load.
+     * @param records Records to insert
+     * @return The number of records inserted
+     * @throws Exception When a record can't be inserted
+     * @see AbstractDataSession#executeStateless(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     */
+    public int bulkInsert(Iterable<? extends T> records) throws Exception {
+        return bulkWrite(records, BulkOperation.INSERT);
+    }
+    /**
+     * Updates the records through a stateless session, in a single transaction. Every
+     * record is updated as a whole, without dirty checking.
+     * @param records Records to update
+     * @return The number of records updated
+     * @throws Exception When a record can't be updated
+     * @see #bulkInsert(java.lang.Iterable)
+     */
+    public int bulkUpdate(Iterable<? extends T> records) throws Exception {
+        return bulkWrite(records, BulkOperation.UPDATE);
+    }
+    /**
+     * Deletes the records through a stateless session, in a single transaction.
+     * @param records Records to delete
+     * @return The number of records deleted
+     * @throws Exception When a record can't be deleted
+     * @see #bulkInsert(java.lang.Iterable)
+     */
+    public int bulkDelete(Iterable<? extends T> records) throws Exception {
+        return bulkWrite(records, BulkOperation.DELETE);
+    }
+
+    private int bulkWrite(Iterable<? extends T> records, final BulkOperation operation) throws Exception {
+        QueryResultCache cache = queryCache;
+        if (cache != null)
+            cache.invalidate(entityType);
+        try {
+            return doBulkWrite(records, operation);
+        } finally {
+            if (cache != null)
+                cache.invalidate(entityType);
+        }
+    }
+
+    private int doBulkWrite(final Iterable<? extends T> records, final BulkOperation operation) throws Exception {
+        return (Integer) dataSession.executeStateless(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                StatelessSession session = dataSession.getStatelessSession();
+                int written = 0;
+                for (T record : records) {
+                    switch (operation) {
+                        case INSERT:
+                            session.insert(record);
+                            break;
+                        case UPDATE:
+                            session.update(record);
+                            break;
+                        default:
+                            session.delete(record);
+                    }
+                    written++;
+                }
+                return written;
+            }
+        });
+    }
+
+    @Override
+    public T getRecord(int id) throws Exception {
+        return entityType.cast(dataSession.executeReadOnly(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                return dataSession.getCurrentSession().get(entityType, (Integer) params[0]);
+            }
+        }, id));
+    }
+
+    @Override
+    public List<T> getRecordsList(List<QueryFilter> filters, String orderBy, boolean ascending) throws Exception {
+        return list(compiler.select(filters, orderBy, ascending), 0, 0);
+    }
+    /**
+     * Shares the query cache with the other searches; the cached arrays are shared by every
+     * caller as well.
+     */
+    @Override
+    public List<Object[]> getRecordsProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending) throws Exception {
+        CompiledQuery query = compiler.selectProjection(filters, properties, orderBy, ascending);
+        if (properties.size() > 1)
+            return list(query, 0, 0);
+        List<Object> rows = list(query, 0, 0);
+        List<Object[]> wrapped = new ArrayList<>(rows.size());
+        for (Object value : rows)
+            wrapped.add(new Object[]{value});
+        return wrapped;
+    }
+
+    @Override
+    public int getRecordsCount(List<QueryFilter> filters) throws Exception {
+        final CompiledQuery query = compiler.count(filters);
+        QueryResultCache cache = getUsableCache();
+        Object key = null;
+        long generation = 0;
+        if (cache != null) {
+            key = Arrays.asList(query.getHql(), Arrays.asList(query.getParameters()));
+            Integer cached = (Integer) cache.get(entityType, key);
+            if (cached != null)
+                return cached;
+            generation = cache.getGeneration(entityType);
+        }
+        Integer count = (Integer) dataSession.executeReadOnly(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                Number count = (Number) query.createQuery(dataSession.getCurrentSession()).uniqueResult();
+                return count.intValue();
+            }
+        });
+        if (cache != null)
+            cache.put(entityType, key, count, generation);
+        return count;
+    }
+
+    @Override
+    public List<T> getRecordsPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit) throws Exception {
+        return list(compiler.selectPage(filters, orderBy, ascending, getIdProperty()), offset, limit);
+    }
+
+    @Override
+    public List<T> getRecordsAfter(List<QueryFilter> filters, String orderBy, boolean ascending, T lastRecord, int limit) throws Exception {
+        if (lastRecord == null)
+            return getRecordsPage(filters, orderBy, ascending, 0, limit);
+        String id = getIdProperty();
+        Object lastValue = orderBy == null ? null : PropertyAccessor.of(entityType, orderBy).get(lastRecord);
+        Object lastId = PropertyAccessor.of(entityType, id).get(lastRecord);
+        CompiledQuery query = compiler.selectAfter(filters, orderBy, ascending, id, lastValue, lastId);
+        return list(query, 0, limit);
+    }
+    /**
+     * Streams the matching records through a read-only session of its own, so the current
+     * session isn't affected. The session is cleared every {@link #getClearInterval() getClearInterval()}
+     * records, and rows are fetched {@link #getFetchSize() getFetchSize()} at a time.
+     */
+    @Override
+    public int scrollRecords(List<QueryFilter> filters, String orderBy, boolean ascending, IRecordVisitor<T> visitor) throws Exception {
+        Session session = dataSession.openSession();
+        int visited = 0;
+        try {
+            session.setDefaultReadOnly(true);
+            session.setCacheMode(CacheMode.IGNORE);
+            session.setFlushMode(FlushMode.MANUAL);
+            Transaction tx = session.beginTransaction();
+            try {
+                Query query = compiler.select(filters, orderBy, ascending).createQuery(session).setFetchSize(fetchSize);
+                ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        visited++;
+                        boolean proceed = visitor.visit(entityType.cast(results.get(0)));
+                        if (!proceed)
+                            break;
+                        if (visited % clearInterval == 0)
+                            session.clear();
+                    }
+                } finally {
+                    results.close();
+                }
+                tx.commit();
+            } catch (Exception ex) {
+                tx.rollback();
+                throw ex;
+            }
+        } finally {
+            session.close();
+        }
+        return visited;
+    }
+    /**
+     * Returns the Hibernate metadata of the entity managed by this service.
+     * @return the metadata of the entity
+     */
+    protected ClassMetadata getClassMetadata() {
+        return dataSession.getCurrentSession().getSessionFactory().getClassMetadata(entityType);
+    }
+
+    private String getIdProperty() {
+        if (idProperty == null)
+            idProperty = getClassMetadata().getIdentifierPropertyName();
+        return idProperty;
+    }
+
+    // Results are stored under their query, which returns rows of the same type every time
+    @SuppressWarnings("unchecked")
+    private <R> List<R> list(CompiledQuery query, int offset, int limit) throws Exception {
+        QueryResultCache cache = getUsableCache();
+        if (cache == null)
+            return query(query, offset, limit);
+        Object key = Arrays.asList(query.getHql(), Arrays.asList(query.getParameters()), offset, limit);
+        List<R> cached = (List<R>) cache.get(entityType, key);
+        if (cached != null)
+            return new ArrayList<>(cached);
+        long generation = cache.getGeneration(entityType);
+        List<R> result = query(query, offset, limit);
+        cache.put(entityType, key, new ArrayList<>(result), generation);
+        return result;
+    }
+    /**
+     * Returns the query cache if results can be read from and stored to it, that is
+     * outside any active transaction, since a transaction may see uncommitted writes.
+     */
+    private QueryResultCache getUsableCache() {
+        QueryResultCache cache = queryCache;
+        return cache == null || dataSession.isTransactionActive() ? null : cache;
+    }
+    /**
+     * Invalidates the cached results of the entity type right away, and once more when
+     * the transaction of the current session completes, so results read by other threads
+     * before the commit aren't served afterwards.
+     */
+    private void invalidateOnCompletion() {
+        final QueryResultCache cache = queryCache;
+        if (cache == null)
+            return;
+        cache.invalidate(entityType);
+        dataSession.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                cache.invalidate(entityType);
+            }
+        });
+    }
+
+    // The caller asks for the type of the rows its query selects
+    @SuppressWarnings("unchecked")
+    private <R> List<R> query(final CompiledQuery query, final int offset, final int limit) throws Exception {
+        return (List<R>) dataSession.executeReadOnly(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                Query hqlQuery = query.createQuery(dataSession.getCurrentSession());
+                if (offset > 0)
+                    hqlQuery.setFirstResult(offset);
+                if (limit > 0)
+                    hqlQuery.setMaxResults(limit);
+                return hqlQuery.list();
+            }
+        });
+    }
+
+    /**
+     * Saves, updates or deletes a single record. The operation can be executed again after
+     * its transaction was rolled back, as group commit and retries do: the identifier and
+     * version Hibernate assigned to the record during the failed attempt are restored to
+     * the values they had before the first attempt.
+     */
+    private class RecordWrite extends AbstractTransactionOperation {
+
+        private final boolean delete;
+        private boolean attempted;
+        private Serializable id;
+        private Object version;
+
+        RecordWrite(boolean delete) {
+            this.delete = delete;
+        }
+
+        @Override
+        public Object execute(Object... params) {
+            write(dataSession.getCurrentSession(), params[0]);
+            invalidateOnCompletion();
+            return null;
+        }
+        /**
+         * Writes the record without invalidating the cached results, which is left to the
+         * caller.
+         */
+        void write(Session session, Object record) {
+            ClassMetadata metadata = session.getSessionFactory().getClassMetadata(entityType);
+            SessionImplementor implementor = (SessionImplementor) session;
+            if (!attempted) {
+                id = metadata.getIdentifier(record, implementor);
+                if (metadata.isVersioned())
+                    version = metadata.getVersion(record);
+                attempted = true;
+            } else {
+                metadata.setIdentifier(record, id, implementor);
+                if (metadata.isVersioned())
+                    metadata.setPropertyValue(record, metadata.getPropertyNames()[metadata.getVersionProperty()], version);
+            }
+            if (delete)
+                session.delete(record);
+            else
+                session.saveOrUpdate(record);
+        }
+    }
+
+    private static enum BulkOperation {
+        INSERT, UPDATE, DELETE
+    }
+}
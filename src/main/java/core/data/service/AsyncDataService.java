@@ -0,0 +1,199 @@
+package core.data.service;
+
+import core.data.access.utils.QueryFilter;
+import core.data.session.AbstractDataSession;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the operations of a {@link IExtendedDataService} in the background, through an
+ * {@link Executor}. Each operation runs on a thread of the executor, where
+ * {@link AbstractDataSession#getCurrentSession() getCurrentSession()} returns a session of
+ * that thread, and the session is released once the operation finishes, so the tasks that
+ * share a pooled thread never share a session. Consequently operations never take part in
+ * a transaction of the calling thread, and the entities they return are detached.
+ * <p>The executor decides how many operations run at once. {@link #newBoundedExecutor(int, int) newBoundedExecutor}
+ * should be sized after the connection pool, since every running operation holds a connection;
+ * on JVMs that support them, {@link #newVirtualThreadExecutor(int) newVirtualThreadExecutor}
+ * runs every operation on a virtual thread instead.</p>
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public class AsyncDataService<T> implements IAsyncGeneralDataService<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+
+    private final IExtendedDataService<T> delegate;
+    private final AbstractDataSession dataSession;
+    private final Executor executor;
+    /**
+     * Initializes the asynchronous service.
+     * @param delegate Service that actually performs the operations
+     * @param dataSession Data session used by {@code delegate}, whose sessions are released
+     * after every operation
+     * @param executor Executor that will run the operations
+     */
+    public AsyncDataService(IExtendedDataService<T> delegate, AbstractDataSession dataSession, Executor executor) {
+        this.delegate = delegate;
+        this.dataSession = dataSession;
+        this.executor = executor;
+    }
+    /**
+     * Creates a pool of daemon threads with a bounded queue. When both the threads and the
+     * queue are busy, the submitting thread waits until there's room in the queue, which
+     * slows submitters down instead of rejecting their work. Operations never run on the
+     * submitting thread, so they never join its transaction.
+     * @param threads Number of threads, usually the maximum size of the connection pool
+     * @param queueCapacity Number of operations that can wait for a thread
+     * @return A new executor, which must be shut down when no longer needed
+     */
+    public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "AsyncDataService-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> {
+                    try {
+                        if (executor.isShutdown())
+                            throw new RejectedExecutionException("Executor has been shut down");
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for room in the queue", ex);
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+    /**
+     * Creates an executor that starts a virtual thread for every operation, when the JVM
+     * supports them. Otherwise a {@link #newBoundedExecutor(int, int) bounded executor}
+     * with the specified number of threads is returned.
+     * @param fallbackThreads Number of threads of the bounded executor used when virtual
+     * threads are not available
+     * @return A new executor, which must be shut down when no longer needed
+     */
+    public static ExecutorService newVirtualThreadExecutor(int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.info("Virtual threads are not available, using a bounded executor instead");
+            return newBoundedExecutor(fallbackThreads, fallbackThreads * 4);
+        }
+    }
+    /**
+     * Returns the service that actually performs the operations.
+     * @return the decorated service
+     */
+    public IExtendedDataService<T> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public CompletableFuture<T> createOrUpdate(T record) {
+        return submit(() -> delegate.createOrUpdate(record));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(T record) {
+        return submit(() -> {
+            delegate.delete(record);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<BatchResult<T>> createOrUpdateAll(Collection<T> records) {
+        return submit(() -> delegate.createOrUpdateAll(records));
+    }
+
+    @Override
+    public CompletableFuture<BatchResult<T>> deleteAll(Collection<T> records) {
+        return submit(() -> delegate.deleteAll(records));
+    }
+
+    @Override
+    public CompletableFuture<T> getRecord(int id) {
+        return submit(() -> delegate.getRecord(id));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getRecordsList(List<QueryFilter> filters, String orderBy, boolean ascending) {
+        return submit(() -> delegate.getRecordsList(filters, orderBy, ascending));
+    }
+
+    @Override
+    public CompletableFuture<List<Object[]>> getRecordsProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending) {
+        return submit(() -> delegate.getRecordsProjection(filters, properties, orderBy, ascending));
+    }
+
+    @Override
+    public CompletableFuture<Integer> getRecordsCount(List<QueryFilter> filters) {
+        return submit(() -> delegate.getRecordsCount(filters));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getRecordsPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit) {
+        return submit(() -> delegate.getRecordsPage(filters, orderBy, ascending, offset, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getRecordsAfter(List<QueryFilter> filters, String orderBy, boolean ascending, T lastRecord, int limit) {
+        return submit(() -> delegate.getRecordsAfter(filters, orderBy, ascending, lastRecord, limit));
+    }
+
+    @Override
+    public CompletableFuture<Integer> scrollRecords(List<QueryFilter> filters, String orderBy, boolean ascending, IRecordVisitor<T> visitor) {
+        return submit(() -> delegate.scrollRecords(filters, orderBy, ascending, visitor));
+    }
+    /**
+     * Runs the operation through the executor, releasing the session of the thread that
+     * ran it afterwards, unless the executor ran it on the submitting thread, whose session
+     * belongs to the caller. An executor that rejects the operation completes the future
+     * exceptionally as well. Operations whose future was cancelled before they started are
+     * skipped.
+     */
+    private <R> CompletableFuture<R> submit(Callable<R> operation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Thread submitter = Thread.currentThread();
+        try {
+            executor.execute(() -> {
+                if (future.isDone())
+                    return;
+                try {
+                    future.complete(operation.call());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    if (Thread.currentThread() != submitter)
+                        release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private void release() {
+        try {
+            dataSession.releaseCurrentSession();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Session of a background data operation could not be released", ex);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package core.data.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk operation, such as {@link IExtendedDataService#createOrUpdateAll(java.util.Collection)
+ * IExtendedDataService.createOrUpdateAll}. It holds the number of records that were
+ * processed successfully and, for every record that was rejected, the record itself
+ * along with the reason.
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public class BatchResult<T> {
+
+    private int succeeded;
+    private final List<Failure<T>> failures;
+    /**
+     * Initializes an empty result.
+     */
+    public BatchResult() {
+        failures = new ArrayList<>();
+    }
+    /**
+     * Counts one more record as successfully processed.
+     */
+    public void addSuccess() {
+        succeeded++;
+    }
+    /**
+     * Registers a record that couldn't be processed.
+     * @param record The rejected record
+     * @param error The reason why the record was rejected
+     */
+    public void addFailure(T record, Exception error) {
+        failures.add(new Failure<>(record, error));
+    }
+    /**
+     * Returns the number of records that were processed successfully.
+     * @return the number of successful records
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+    /**
+     * Returns the records that couldn't be processed, in the same order they were passed.
+     * @return an unmodifiable list of failures
+     */
+    public List<Failure<T>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+    /**
+     * Indicates whether every record was processed successfully.
+     * @return {@code true} if there are no failures, {@code false} otherwise
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d succeeded, %d failed", succeeded, failures.size());
+    }
+    /**
+     * A record rejected by a bulk operation.
+     * @param <T> Type of the record
+     */
+    public static class Failure<T> {
+
+        private final T record;
+        private final Exception error;
+
+        private Failure(T record, Exception error) {
+            this.record = record;
+            this.error = error;
+        }
+        /**
+         * @return the rejected record
+         */
+        public T getRecord() {
+            return record;
+        }
+        /**
+         * @return the reason why the record was rejected
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package core.data.service;
+
+import core.data.access.utils.PropertyAccessor;
+import core.data.access.utils.QueryFilter;
+import core.data.session.AbstractDataSession;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.transaction.Synchronization;
+
+/**
+ * Decorator that keeps the records read by {@link #getRecord(int) getRecord} of another
+ * data service in a bounded local cache, so repeated lookups of the same ID don't reach
+ * the database. Every other search is delegated as is.
+ * <p>The cache holds up to a fixed number of records, discarding the least recently used
+ * one when full, and optionally discards records older than a time to live. IDs are kept
+ * as primitive {@code int} values. When several threads miss the same ID at once, only one
+ * of them reads it from the delegate and the others wait for its result. Records not found
+ * are not cached.</p>
+ * <p>Writes issued through this service invalidate the IDs of the written records once the
+ * delegate returns, whether the write succeeded or not, and a read of an invalidated ID that
+ * was already in progress is not stored. When the service knows the data session of the
+ * delegate and the write joined a transaction still open when the delegate returns, the IDs
+ * are invalidated once more when that transaction completes, so records read by other
+ * threads before the commit aren't served afterwards; lookups made within an active
+ * transaction bypass the cache, since they may see uncommitted writes. Writes done by other
+ * means are only noticed when the records expire.</p>
+ * <p>The cached entities are not copied: the same detached instance is returned to every
+ * caller that looks up its ID, so a change made to it by one caller is seen by all the
+ * others, even if it's never written. Callers must treat the returned records as read-only,
+ * and read a record from the delegate, or from a search, before modifying it.</p>
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public class CachingDataService<T> implements IExtendedDataService<T> {
+
+    private final IExtendedDataService<T> delegate;
+    private final AbstractDataSession dataSession;
+    private final String idProperty;
+    private final IntKeyedCache<T> records;
+    private final Map<Integer, Load<T>> loading;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    /**
+     * Initializes a cache of up to 1000 records that never expire, for entities whose
+     * identifier property is {@code id}.
+     * @param delegate Service that actually reads and writes the records
+     */
+    public CachingDataService(IExtendedDataService<T> delegate) {
+        this(delegate, "id", 1000, 0, TimeUnit.SECONDS);
+    }
+    /**
+     * Initializes a cache with the specified bounds.
+     * @param delegate Service that actually reads and writes the records
+     * @param idProperty Name of the identifier property of the records, used to find the
+     * IDs to invalidate when they're written
+     * @param maxEntries Maximum number of records kept at any time
+     * @param timeToLive Time after which a cached record is read again from the delegate,
+     * {@code 0} to keep records until they're evicted or invalidated
+     * @param unit Unit of {@code timeToLive}
+     */
+    public CachingDataService(IExtendedDataService<T> delegate, String idProperty, int maxEntries, long timeToLive, TimeUnit unit) {
+        this(delegate, null, idProperty, maxEntries, timeToLive, unit);
+    }
+    /**
+     * Initializes a cache with the specified bounds, aware of the transactions of the data
+     * session used by the delegate.
+     * @param delegate Service that actually reads and writes the records
+     * @param dataSession Data session used by {@code delegate}, whose transactions are
+     * followed to invalidate the written records once they complete, or {@code null}
+     * @param idProperty Name of the identifier property of the records, used to find the
+     * IDs to invalidate when they're written
+     * @param maxEntries Maximum number of records kept at any time
+     * @param timeToLive Time after which a cached record is read again from the delegate,
+     * {@code 0} to keep records until they're evicted or invalidated
+     * @param unit Unit of {@code timeToLive}
+     */
+    public CachingDataService(IExtendedDataService<T> delegate, AbstractDataSession dataSession, String idProperty, int maxEntries, long timeToLive, TimeUnit unit) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Maximum number of entries must be greater than zero");
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("Time to live can't be negative");
+        this.delegate = delegate;
+        this.dataSession = dataSession;
+        this.idProperty = idProperty;
+        this.records = new IntKeyedCache<>(maxEntries, unit.toNanos(timeToLive));
+        this.loading = new HashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+    /**
+     * Returns the service that actually reads and writes the records.
+     * @return the decorated service
+     */
+    public IExtendedDataService<T> getDelegate() {
+        return delegate;
+    }
+    /**
+     * Returns the cached record if there's one, otherwise reads it from the delegate, or
+     * waits for another thread that is already reading it. The returned record is shared
+     * with every other caller and must not be modified. Within an active transaction of
+     * the data session the record is always read from the delegate, and not cached.
+     */
+    @Override
+    public T getRecord(int id) throws Exception {
+        if (dataSession != null && dataSession.isTransactionActive())
+            return delegate.getRecord(id);
+        Load<T> load;
+        boolean owner = false;
+        synchronized (this) {
+            T record = records.get(id);
+            if (record != null) {
+                hits.incrementAndGet();
+                return record;
+            }
+            load = loading.get(id);
+            if (load == null) {
+                load = new Load<>();
+                loading.put(id, load);
+                owner = true;
+            }
+        }
+        misses.incrementAndGet();
+        if (!owner)
+            return load.await();
+        try {
+            load.value = delegate.getRecord(id);
+        } catch (Exception ex) {
+            load.error = ex;
+        }
+        synchronized (this) {
+            loading.remove(id);
+            if (load.value != null && !load.stale)
+                records.put(id, load.value);
+        }
+        load.done.countDown();
+        return load.await();
+    }
+
+    @Override
+    public T createOrUpdate(T record) throws Exception {
+        try {
+            return delegate.createOrUpdate(record);
+        } finally {
+            invalidateOnCompletion(Collections.singletonList(record));
+        }
+    }
+
+    @Override
+    public void delete(T record) throws Exception {
+        try {
+            delegate.delete(record);
+        } finally {
+            invalidateOnCompletion(Collections.singletonList(record));
+        }
+    }
+
+    @Override
+    public BatchResult<T> createOrUpdateAll(Collection<T> records) throws Exception {
+        try {
+            return delegate.createOrUpdateAll(records);
+        } finally {
+            invalidateOnCompletion(records);
+        }
+    }
+
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> records) throws Exception {
+        try {
+            return delegate.deleteAll(records);
+        } finally {
+            invalidateOnCompletion(records);
+        }
+    }
+
+    @Override
+    public List<T> getRecordsList(List<QueryFilter> filters, String orderBy, boolean ascending) throws Exception {
+        return delegate.getRecordsList(filters, orderBy, ascending);
+    }
+
+    @Override
+    public List<Object[]> getRecordsProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending) throws Exception {
+        return delegate.getRecordsProjection(filters, properties, orderBy, ascending);
+    }
+
+    @Override
+    public int getRecordsCount(List<QueryFilter> filters) throws Exception {
+        return delegate.getRecordsCount(filters);
+    }
+
+    @Override
+    public List<T> getRecordsPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit) throws Exception {
+        return delegate.getRecordsPage(filters, orderBy, ascending, offset, limit);
+    }
+
+    @Override
+    public List<T> getRecordsAfter(List<QueryFilter> filters, String orderBy, boolean ascending, T lastRecord, int limit) throws Exception {
+        return delegate.getRecordsAfter(filters, orderBy, ascending, lastRecord, limit);
+    }
+
+    @Override
+    public int scrollRecords(List<QueryFilter> filters, String orderBy, boolean ascending, IRecordVisitor<T> visitor) throws Exception {
+        return delegate.scrollRecords(filters, orderBy, ascending, visitor);
+    }
+    /**
+     * Discards the cached record with the specified ID, if any. Must be called after
+     * writing the record without going through this service.
+     * @param id ID of the record
+     */
+    public synchronized void invalidate(int id) {
+        records.remove(id);
+        Load<T> load = loading.get(id);
+        if (load != null)
+            load.stale = true;
+    }
+    /**
+     * Discards every cached record.
+     */
+    public synchronized void invalidateAll() {
+        records.clear();
+        for (Load<T> load : loading.values())
+            load.stale = true;
+    }
+    /**
+     * Returns the number of records currently cached.
+     * @return the number of cached records
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+    /**
+     * Returns the number of lookups served from the cache.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    /**
+     * Returns the number of lookups that weren't cached, including the ones that waited
+     * for another thread to read the same ID.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    /**
+     * Returns the number of records discarded to make room for others.
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return records.getEvictions();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingDataService[size=%d, hits=%d, misses=%d, evictions=%d]",
+                size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * Invalidates the IDs of the written records right away and, when the write joined a
+     * transaction still active, once more after that transaction completes. The IDs are
+     * read before registering, since records may get new IDs or be detached meanwhile.
+     */
+    private void invalidateOnCompletion(Collection<T> written) {
+        if (written == null)
+            return;
+        final List<Integer> ids = new ArrayList<>(written.size());
+        for (T record : written) {
+            Integer id = getId(record);
+            if (id != null) {
+                ids.add(id);
+                invalidate(id);
+            }
+        }
+        if (ids.isEmpty() || dataSession == null || !dataSession.isTransactionActive())
+            return;
+        dataSession.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                for (int id : ids)
+                    invalidate(id);
+            }
+        });
+    }
+
+    private Integer getId(T record) {
+        if (record == null)
+            return null;
+        Object id = PropertyAccessor.of(record.getClass(), idProperty).get(record);
+        return id instanceof Number ? ((Number) id).intValue() : null;
+    }
+    /**
+     * Read of an ID in progress, shared by every thread that missed it meanwhile.
+     */
+    private static class Load<T> {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T value;
+        private Exception error;
+        private boolean stale;
+
+        T await() throws Exception {
+            done.await();
+            if (error != null)
+                throw error;
+            return value;
+        }
+    }
+}
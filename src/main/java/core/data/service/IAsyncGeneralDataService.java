@@ -0,0 +1,116 @@
+package core.data.service;
+
+import core.data.access.utils.QueryFilter;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link IExtendedDataService}. Every method returns right away,
+ * and the returned future is completed with the result of the operation, or completed
+ * exceptionally with its error, once the operation finishes in the background. Independent
+ * operations can be issued together and run in parallel.
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public interface IAsyncGeneralDataService<T> {
+
+    /**
+     * Creates a new record or updates an existing one.
+     * @param record The object to persist/update
+     * @return A future completed with the same instance that was persisted/updated
+     */
+    public CompletableFuture<T> createOrUpdate(T record);
+    /**
+     * Deletes a record from the database.
+     * @param record The entity to remove
+     * @return A future completed once the record is deleted
+     */
+    public CompletableFuture<Void> delete(T record);
+    /**
+     * Creates or updates all the specified records. Records rejected individually are
+     * reported in the result.
+     * @param records The objects to persist/update
+     * @return A future completed with the number of records persisted and the ones that were rejected
+     * @see IExtendedDataService#createOrUpdateAll(java.util.Collection)
+     */
+    public CompletableFuture<BatchResult<T>> createOrUpdateAll(Collection<T> records);
+    /**
+     * Deletes all the specified records. Records rejected individually are reported in
+     * the result.
+     * @param records The entities to remove
+     * @return A future completed with the number of records deleted and the ones that were rejected
+     * @see IExtendedDataService#deleteAll(java.util.Collection)
+     */
+    public CompletableFuture<BatchResult<T>> deleteAll(Collection<T> records);
+    /**
+     * Finds a record by its id
+     * @param id Database ID for the record
+     * @return A future completed with the object represented by the specified ID
+     */
+    public CompletableFuture<T> getRecord(int id);
+    /**
+     * Finds the records that match the specified conditions
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} if no explicit
+     * ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @return A future completed with a list of objects of type {@code T}
+     */
+    public CompletableFuture<List<T>> getRecordsList(List<QueryFilter> filters, String orderBy, boolean ascending);
+    /**
+     * Finds the records that match the specified conditions, reading only the specified
+     * properties instead of whole entities.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param properties Names of the properties to read, at least one
+     * @param orderBy Name of the property to order the results over, pass {@code null} if no explicit
+     * ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @return A future completed with an array per matching record, holding the values of the
+     * properties in the same order as {@code properties}
+     * @see IExtendedDataService#getRecordsProjection(java.util.List, java.util.List, java.lang.String, boolean)
+     */
+    public CompletableFuture<List<Object[]>> getRecordsProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending);
+    /**
+     * Counts the records that match the specified conditions
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @return A future completed with the number of matching records
+     */
+    public CompletableFuture<Integer> getRecordsCount(List<QueryFilter> filters);
+    /**
+     * Finds a page of the records that match the specified conditions.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param offset Number of matching records to skip
+     * @param limit Maximum number of records to return
+     * @return A future completed with a list of at most {@code limit} objects of type {@code T}
+     * @see IExtendedDataService#getRecordsPage(java.util.List, java.lang.String, boolean, int, int)
+     */
+    public CompletableFuture<List<T>> getRecordsPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit);
+    /**
+     * Finds the records that follow the specified one.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param lastRecord Last record of the previous page, or {@code null} to get the first page
+     * @param limit Maximum number of records to return
+     * @return A future completed with a list of at most {@code limit} objects of type {@code T}
+     * @see IExtendedDataService#getRecordsAfter(java.util.List, java.lang.String, boolean, java.lang.Object, int)
+     */
+    public CompletableFuture<List<T>> getRecordsAfter(List<QueryFilter> filters, String orderBy, boolean ascending, T lastRecord, int limit);
+    /**
+     * Walks the records that match the specified conditions without loading them all at
+     * once. The visitor is called from the thread that runs the operation.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} if no explicit
+     * ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param visitor Callback that processes every record
+     * @return A future completed with the number of records visited
+     * @see IExtendedDataService#scrollRecords(java.util.List, java.lang.String, boolean, core.data.service.IRecordVisitor)
+     */
+    public CompletableFuture<Integer> scrollRecords(List<QueryFilter> filters, String orderBy, boolean ascending, IRecordVisitor<T> visitor);
+}
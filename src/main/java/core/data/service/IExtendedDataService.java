@@ -0,0 +1,104 @@
+package core.data.service;
+
+import core.data.access.utils.QueryFilter;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Data services that, besides the basic methods of {@link IGeneralDataService}, write
+ * records in bulk and read them by pages, as a stream or as projections. Implementations of
+ * {@link IGeneralDataService} alone don't need to provide them.
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public interface IExtendedDataService<T> extends IGeneralDataService<T> {
+
+    /**
+     * Creates or updates all the specified records. Records rejected individually are
+     * reported in the result instead of aborting the whole operation. Implementations may
+     * write the records in several transactions, in which case the records reported as
+     * successful are committed even if others fail.
+     * @param records The objects to persist/update
+     * @return The number of records persisted and the ones that were rejected
+     * @throws Exception When the records can't be written at all
+     */
+    public BatchResult<T> createOrUpdateAll(Collection<T> records) throws Exception;
+    /**
+     * Deletes all the specified records. Records rejected individually are reported in the
+     * result instead of aborting the whole operation. Implementations may delete the records
+     * in several transactions, in which case the records reported as successful are deleted
+     * even if others fail.
+     * @param records The entities to remove
+     * @return The number of records deleted and the ones that were rejected
+     * @throws Exception When the records can't be deleted at all
+     */
+    public BatchResult<T> deleteAll(Collection<T> records) throws Exception;
+    /**
+     * Finds the records that match the specified conditions, reading only the specified
+     * properties instead of whole entities. Nothing but the selected columns is read from
+     * the database, and no entity is instantiated, so it's the cheapest way to fill a grid
+     * that displays a few properties of many records, e.g. a {@link core.gui.RichDataModel
+     * RichDataModel} of {@code Object[]} rows, whose properties are returned by its
+     * {@link core.gui.RichDataModel#getColumnProperties() getColumnProperties} method.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param properties Names of the properties to read, at least one. Nested properties,
+     * such as {@code customer.name}, yield {@code null} when an association is {@code null}
+     * @param orderBy Name of the property to order the results over, pass {@code null} if no explicit
+     * ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @return A list with an array per matching record, holding the values of the properties
+     * in the same order as {@code properties}
+     * @throws Exception When an error occurs
+     */
+    public List<Object[]> getRecordsProjection(List<QueryFilter> filters, List<String> properties, String orderBy, boolean ascending) throws Exception;
+    /**
+     * Counts the records that match the specified conditions
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @return The number of matching records
+     * @throws Exception When an error occurs
+     */
+    public int getRecordsCount(List<QueryFilter> filters) throws Exception;
+    /**
+     * Finds a page of the records that match the specified conditions. Records with the same
+     * value for {@code orderBy} are further ordered by their ID, so consecutive pages never
+     * overlap.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param offset Number of matching records to skip
+     * @param limit Maximum number of records to return
+     * @return A list of at most {@code limit} objects of type {@code T}
+     * @throws Exception When an error occurs
+     */
+    public List<T> getRecordsPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit) throws Exception;
+    /**
+     * Finds the records that follow the specified one, as ordered by {@link #getRecordsPage(java.util.List, java.lang.String, boolean, int, int)
+     * getRecordsPage}. Instead of skipping records, the search continues from the {@code orderBy} value
+     * and ID of {@code lastRecord}, so the cost of a page doesn't depend on how deep it is.
+     * The {@code orderBy} property must not be {@code null} for any of the matching records.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param lastRecord Last record of the previous page, or {@code null} to get the first page
+     * @param limit Maximum number of records to return
+     * @return A list of at most {@code limit} objects of type {@code T}
+     * @throws Exception When an error occurs
+     */
+    public List<T> getRecordsAfter(List<QueryFilter> filters, String orderBy, boolean ascending, T lastRecord, int limit) throws Exception;
+    /**
+     * Walks the records that match the specified conditions without loading them all at
+     * once. Records are read from a forward-only cursor and handed one by one to the visitor,
+     * and they're released as the walk goes on, so memory use doesn't depend on the number
+     * of matching records.
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} if no explicit
+     * ordering is required
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     * @param visitor Callback that processes every record
+     * @return The number of records visited
+     * @throws Exception When an error occurs, either reading or visiting the records
+     */
+    public int scrollRecords(List<QueryFilter> filters, String orderBy, boolean ascending, IRecordVisitor<T> visitor) throws Exception;
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package core.data.service;
+
+/**
+ * Callback used to process, one at a time, the records streamed by
+ * {@link IExtendedDataService#scrollRecords(java.util.List, java.lang.String, boolean, core.data.service.IRecordVisitor)
+ * IExtendedDataService.scrollRecords}.
+ * @author Rene Vera Apale
+ * @param <T> Type of the records
+ */
+public interface IRecordVisitor<T> {
+
+    /**
+     * Processes a single record. The record may be detached from its session as soon
+     * as this method returns, so it shouldn't be kept for lazy loading afterwards.
+     * @param record The current record
+     * @return {@code true} to continue with the next record, {@code false} to stop
+     * @throws Exception When an error occurs; the streaming stops and the exception is
+     * propagated to the caller
+     */
+    public boolean visit(T record) throws Exception;
+}
@@ -0,0 +1,170 @@
+package core.data.service;
+
+/**
+ * Fixed-capacity map from primitive {@code int} keys to values, evicting the least
+ * recently used entry when full and, optionally, entries older than a time to live.
+ * Entries live in parallel arrays: hash buckets are chained through slot indexes and
+ * the recency order is a doubly linked list of slot indexes, so neither lookups nor
+ * insertions allocate, and keys are never boxed.
+ * <p>Not thread-safe, callers must synchronize access.</p>
+ * @author Rene Vera Apale
+ * @param <V> Type of the values
+ */
+final class IntKeyedCache<V> {
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long timeToLiveNanos;
+    private final int[] buckets;
+    private final int[] keys;
+    private final Object[] values;
+    private final long[] stored;
+    private final int[] chain;
+    private final int[] older;
+    private final int[] newer;
+    private int eldest = NONE;
+    private int youngest = NONE;
+    private int freeSlot;
+    private int size;
+    private long evictions;
+    /**
+     * @param capacity Maximum number of entries
+     * @param timeToLiveNanos Time after which an entry expires, {@code 0} to never expire
+     */
+    IntKeyedCache(int capacity, long timeToLiveNanos) {
+        this.capacity = capacity;
+        this.timeToLiveNanos = timeToLiveNanos;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 4 / 3) - 1) << 1;
+        buckets = new int[tableSize];
+        java.util.Arrays.fill(buckets, NONE);
+        keys = new int[capacity];
+        values = new Object[capacity];
+        stored = new long[capacity];
+        chain = new int[capacity];
+        older = new int[capacity];
+        newer = new int[capacity];
+        for (int i = 0; i < capacity; i++)
+            chain[i] = i + 1 < capacity ? i + 1 : NONE;
+        freeSlot = 0;
+    }
+
+    // The values array only holds what put stored
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = find(key);
+        if (slot == NONE)
+            return null;
+        if (timeToLiveNanos > 0 && System.nanoTime() - stored[slot] > timeToLiveNanos) {
+            release(slot);
+            return null;
+        }
+        touch(slot);
+        return (V) values[slot];
+    }
+
+    void put(int key, V value) {
+        int slot = find(key);
+        if (slot == NONE) {
+            if (size == capacity) {
+                release(eldest);
+                evictions++;
+            }
+            slot = freeSlot;
+            freeSlot = chain[slot];
+            int bucket = bucket(key);
+            keys[slot] = key;
+            chain[slot] = buckets[bucket];
+            buckets[bucket] = slot;
+            older[slot] = NONE;
+            newer[slot] = NONE;
+            link(slot);
+            size++;
+        } else
+            touch(slot);
+        values[slot] = value;
+        stored[slot] = System.nanoTime();
+    }
+
+    boolean remove(int key) {
+        int slot = find(key);
+        if (slot == NONE)
+            return false;
+        release(slot);
+        return true;
+    }
+
+    void clear() {
+        while (eldest != NONE)
+            release(eldest);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    private int bucket(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (buckets.length - 1);
+    }
+
+    private int find(int key) {
+        for (int slot = buckets[bucket(key)]; slot != NONE; slot = chain[slot]) {
+            if (keys[slot] == key)
+                return slot;
+        }
+        return NONE;
+    }
+    /**
+     * Unlinks the slot from its bucket and from the recency list, and returns it to the
+     * free list.
+     */
+    private void release(int slot) {
+        int bucket = bucket(keys[slot]);
+        if (buckets[bucket] == slot)
+            buckets[bucket] = chain[slot];
+        else {
+            int previous = buckets[bucket];
+            while (chain[previous] != slot)
+                previous = chain[previous];
+            chain[previous] = chain[slot];
+        }
+        unlink(slot);
+        values[slot] = null;
+        chain[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+    }
+
+    private void touch(int slot) {
+        if (slot == youngest)
+            return;
+        unlink(slot);
+        link(slot);
+    }
+
+    private void link(int slot) {
+        older[slot] = youngest;
+        newer[slot] = NONE;
+        if (youngest != NONE)
+            newer[youngest] = slot;
+        youngest = slot;
+        if (eldest == NONE)
+            eldest = slot;
+    }
+
+    private void unlink(int slot) {
+        if (older[slot] != NONE)
+            newer[older[slot]] = newer[slot];
+        else
+            eldest = newer[slot];
+        if (newer[slot] != NONE)
+            older[newer[slot]] = older[slot];
+        else
+            youngest = older[slot];
+    }
+}
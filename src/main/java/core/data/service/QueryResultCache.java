@@ -0,0 +1,211 @@
+package core.data.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of query results, grouped by the entity type they were read from. Data
+ * services store the results of their searches keyed by the compiled query, which reflects
+ * the shape of the filters along with their values and the ordering, and invalidate every
+ * result of an entity type whenever they write records of that type. Sharing a single
+ * instance between the services of an application makes the writes of any of them
+ * invalidate the results cached by the others.
+ * <p>Every entity type has a generation number, increased by each invalidation. Results
+ * are stored along with the generation in force when their query started, so a result
+ * read concurrently with a write is never served once the write is done. When the cache
+ * is full the least recently used result is discarded. All methods are thread-safe.</p>
+ * @author Rene Vera Apale
+ */
+public class QueryResultCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, CachedResult> entries;
+    private final ConcurrentMap<Class<?>, AtomicLong> generations;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong invalidations;
+    /**
+     * Initializes a cache that holds up to 1000 results.
+     */
+    public QueryResultCache() {
+        this(1000);
+    }
+    /**
+     * Initializes a cache that holds up to the specified number of results.
+     * @param maxEntries Maximum number of results kept at any time
+     */
+    public QueryResultCache(final int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Maximum number of entries must be greater than zero");
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.generations = new ConcurrentHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.invalidations = new AtomicLong();
+    }
+    /**
+     * Returns the current generation of the entity type. It must be read before running
+     * the query whose result will be stored.
+     * @param type Entity type
+     * @return the current generation of the type
+     */
+    public long getGeneration(Class<?> type) {
+        return generation(type).get();
+    }
+    /**
+     * Returns the result stored for the specified key, counting a hit or a miss.
+     * @param type Entity type the result was read from
+     * @param key Key of the result
+     * @return The stored result, or {@code null} if there's none
+     */
+    public Object get(Class<?> type, Object key) {
+        long current = generation(type).get();
+        CachedResult entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(type, key));
+        }
+        if (entry == null || entry.generation != current) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+    /**
+     * Stores a result, unless the entity type was invalidated since the query started.
+     * @param type Entity type the result was read from
+     * @param key Key of the result
+     * @param value The result
+     * @param generation Generation of the type read before running the query
+     */
+    public void put(Class<?> type, Object key, Object value, long generation) {
+        if (generation(type).get() != generation)
+            return;
+        synchronized (entries) {
+            entries.put(new Key(type, key), new CachedResult(value, generation));
+        }
+    }
+    /**
+     * Discards every result of the specified entity type.
+     * @param type Entity type which records were written
+     */
+    public void invalidate(Class<?> type) {
+        generation(type).incrementAndGet();
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().type == type)
+                    keys.remove();
+            }
+        }
+    }
+    /**
+     * Discards every result.
+     */
+    public void clear() {
+        for (AtomicLong generation : generations.values())
+            generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    /**
+     * Returns the number of results currently stored.
+     * @return the number of results
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    /**
+     * Returns the maximum number of results kept at any time.
+     * @return the maximum number of results
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    /**
+     * Returns the number of lookups that found a result.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    /**
+     * Returns the number of lookups that didn't find a result.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    /**
+     * Returns the number of times an entity type was invalidated.
+     * @return the number of invalidations
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, hits=%d, misses=%d, invalidations=%d", size(), getHitCount(), getMissCount(), getInvalidationCount());
+    }
+
+    private AtomicLong generation(Class<?> type) {
+        AtomicLong generation = generations.get(type);
+        if (generation == null) {
+            AtomicLong created = new AtomicLong();
+            generation = generations.putIfAbsent(type, created);
+            if (generation == null)
+                generation = created;
+        }
+        return generation;
+    }
+
+    private static class Key {
+
+        private final Class<?> type;
+        private final Object key;
+
+        Key(Class<?> type, Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return type == other.type && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + key.hashCode();
+        }
+    }
+
+    private static class CachedResult {
+
+        private final Object value;
+        private final long generation;
+
+        CachedResult(Object value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+}
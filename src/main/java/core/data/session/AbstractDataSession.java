@@ -1,31 +1,430 @@
 package core.data.session;
 
 import core.config.AppConfig;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.SharedCacheMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ThreadLocalSessionContext;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 
 /**
  * Provides a basic implementation to initialize a Hibernate session factory, as
  * well as the basic unimplemented methods for a common data session.
+ * <p>The session factory can be built on a background thread through {@link #initInBackground(core.config.AppConfig)
+ * initInBackground}, so the application displays its main frame meanwhile. Every method of
+ * this class that needs the factory waits until it's built; implementations of the abstract
+ * methods must reach the factory through {@link #getSessionFactory() getSessionFactory()},
+ * or be called only through those methods, since the {@link #sessionFactory} field is
+ * {@code null} until then.</p>
  * @author Rene Vera Apale
  */
 public abstract class AbstractDataSession {
+    /**
+     * Configuration key for the number of connections the pool opens at startup and
+     * keeps at all times. Defaults to {@value #DEFAULT_POOL_MIN_SIZE}.
+     */
+    public static final String POOL_MIN_SIZE = "db.pool.minSize";
+    /**
+     * Configuration key for the maximum number of connections of the pool. Defaults to
+     * {@value #DEFAULT_POOL_MAX_SIZE}.
+     */
+    public static final String POOL_MAX_SIZE = "db.pool.maxSize";
+    /**
+     * Configuration key for the seconds an idle connection is kept before the pool closes
+     * it, {@code 0} to keep it forever. Defaults to {@value #DEFAULT_POOL_IDLE_TIMEOUT}.
+     */
+    public static final String POOL_IDLE_TIMEOUT = "db.pool.idleTimeout";
+    /**
+     * Configuration key for the number of prepared statements cached by the pool, {@code 0}
+     * to disable the cache. Defaults to {@value #DEFAULT_POOL_STATEMENT_CACHE_SIZE}.
+     */
+    public static final String POOL_STATEMENT_CACHE_SIZE = "db.pool.statementCacheSize";
+    /**
+     * Configuration key for the number of rows fetched from the database in a single
+     * round trip. The driver default is used if it's not set.
+     */
+    public static final String JDBC_FETCH_SIZE = "db.jdbc.fetchSize";
+    /**
+     * Configuration key for the number of statements sent to the database in a single
+     * JDBC batch. Batching is disabled if it's not set.
+     */
+    public static final String JDBC_BATCH_SIZE = "db.jdbc.batchSize";
+    /**
+     * Configuration key to enable the second-level cache of entities, {@code true} or
+     * {@code false}. Disabled by default.
+     */
+    public static final String CACHE_ENABLED = "db.cache.enabled";
+    /**
+     * Configuration key for the entities held by the second-level cache: {@code ALL} for
+     * every entity, or {@code ENABLE_SELECTIVE} for those annotated with {@link javax.persistence.Cacheable
+     * Cacheable}. Defaults to {@code ENABLE_SELECTIVE}.
+     */
+    public static final String CACHE_MODE = "db.cache.mode";
+    /**
+     * Configuration key for the concurrency strategy of the cached entities that don't
+     * declare their own. Defaults to {@value #DEFAULT_CACHE_CONCURRENCY_STRATEGY}.
+     */
+    public static final String CACHE_CONCURRENCY_STRATEGY = "db.cache.concurrencyStrategy";
+    /**
+     * Configuration key for the class of the cache region factory. Defaults to the
+     * Ehcache singleton region factory.
+     */
+    public static final String CACHE_REGION_FACTORY = "db.cache.regionFactory";
+    /**
+     * Configuration key for the number of read-only replicas of the database. Each replica
+     * <i>n</i>, starting at 1, is defined by the keys {@value #REPLICA_URL}, {@value #REPLICA_USER}
+     * and {@value #REPLICA_PASSWORD}, where {@code %d} stands for <i>n</i>; everything else
+     * is taken from the primary database configuration.
+     */
+    public static final String REPLICA_COUNT = "db.replicas";
+    /**
+     * Pattern of the configuration key for the JDBC URL of a replica.
+     */
+    public static final String REPLICA_URL = "db.replica.%d.url";
+    /**
+     * Pattern of the configuration key for the user of a replica. The primary database
+     * user is used if it's not set.
+     */
+    public static final String REPLICA_USER = "db.replica.%d.user";
+    /**
+     * Pattern of the configuration key for the password of a replica. The primary database
+     * password is used if it's not set.
+     */
+    public static final String REPLICA_PASSWORD = "db.replica.%d.password";
+    /**
+     * Configuration key for the maximum number of operations merged into a single transaction
+     * by {@link #executeGrouped(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeGrouped}. Group commit is disabled if it's not set or lower than 2.
+     */
+    public static final String GROUP_COMMIT_SIZE = "db.groupCommit.maxSize";
+    /**
+     * Configuration key for the milliseconds a group of operations waits for more members
+     * before being committed. Defaults to {@value #DEFAULT_GROUP_COMMIT_WINDOW}.
+     */
+    public static final String GROUP_COMMIT_WINDOW = "db.groupCommit.windowMillis";
+
+    private static final int DEFAULT_POOL_MIN_SIZE = 2;
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final int DEFAULT_POOL_IDLE_TIMEOUT = 300;
+    private static final int DEFAULT_POOL_STATEMENT_CACHE_SIZE = 100;
+    private static final int DEFAULT_GROUP_COMMIT_WINDOW = 2;
+    private static final String DEFAULT_CACHE_CONCURRENCY_STRATEGY = "read-write";
+    private static final String DEFAULT_CACHE_REGION_FACTORY = "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory";
+    private static final String POOLED_PROVIDER = "org.hibernate.c3p0.internal.C3P0ConnectionProvider";
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
     
     protected SessionFactory sessionFactory;
+    /**
+     * Transaction last begun by {@link #beginTransaction() beginTransaction}.
+     * @deprecated A single field is shared by every thread, while transactions run
+     * concurrently on worker threads, during group commits and retries; use the
+     * transaction of the current session, {@code getCurrentSession().getTransaction()},
+     * instead
+     */
+    @Deprecated
     protected Transaction transaction;
+    private SessionFactory[] replicaFactories = new SessionFactory[0];
+    private AtomicInteger[] replicaLoad = new AtomicInteger[0];
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<Session> readSession = new ThreadLocal<>();
+    private final ThreadLocal<StatelessSession> statelessSession = new ThreadLocal<>();
+    private final Object groupLock = new Object();
+    private CommitGroup openGroup;
+    private volatile int groupCommitSize;
+    private volatile long groupCommitWindowNanos;
+    private final StartupStatistics startup = new StartupStatistics();
+    private final AtomicBoolean bootstrapWaitRecorded = new AtomicBoolean();
+    private volatile CompletableFuture<Void> bootstrap;
     
     /**
      * Provides the basic initialization process to create a Hibernate session
-     * factory. This method can be override in order to apply custom configuration
+     * factory. The configuration is read from the <i>hibernate.cfg.xml</i> resource and
+     * then tuned through {@link #applySettings(org.hibernate.cfg.Configuration, core.config.AppConfig)
+     * applySettings}, which replaces Hibernate's built-in connection provider with a pool;
+     * once the factory is built the pool is warmed, so the first query doesn't pay for
+     * opening connections. Then a factory is built for every replica defined through
+     * {@link #REPLICA_COUNT}, and group commit is enabled if {@link #GROUP_COMMIT_SIZE} is
+     * set. This method can be override in order to apply custom configuration
      * values through the {@code config} parameter.
-     * @param config Custom values that can be applied to the Hibernate configuration
+     * @param config Custom values that can be applied to the Hibernate configuration,
+     * {@code null} to use the Hibernate configuration as-is
      */
     public void init(AppConfig config) {
+        long start = System.nanoTime();
         Configuration hibernateCfg = new Configuration();
         hibernateCfg.configure();
+        int warmConnections = 0;
+        if (config != null)
+            warmConnections = applySettings(hibernateCfg, config);
+        startup.record("configuration", start);
+        start = System.nanoTime();
         sessionFactory = hibernateCfg.buildSessionFactory();
+        startup.record("sessionFactory", start);
+        start = System.nanoTime();
+        warmUpPool(sessionFactory, warmConnections);
+        startup.record("poolWarmUp", start);
+        if (config != null) {
+            start = System.nanoTime();
+            initReplicas(config);
+            if (getReplicaCount() > 0)
+                startup.record("replicas", start);
+            setGroupCommit(getInteger(config, GROUP_COMMIT_SIZE, 0),
+                    getInteger(config, GROUP_COMMIT_WINDOW, DEFAULT_GROUP_COMMIT_WINDOW), TimeUnit.MILLISECONDS);
+        }
+    }
+    /**
+     * Runs {@link #init(core.config.AppConfig) init} on a background thread and returns
+     * right away, so the application can build and display its main frame while the session
+     * factory is built. Data operations issued meanwhile wait until the initialization
+     * completes, and fail with an {@link IllegalStateException} if it failed. The timing of
+     * each phase is logged once the initialization completes.
+     * @param config Custom values that can be applied to the Hibernate configuration,
+     * {@code null} to use the Hibernate configuration as-is
+     * @return A future completed when the initialization completes, exceptionally if it fails
+     * @throws IllegalStateException When the session was already initialized in the background
+     */
+    public CompletableFuture<Void> initInBackground(final AppConfig config) {
+        if (bootstrap != null)
+            throw new IllegalStateException("Data session is already being initialized");
+        final CompletableFuture<Void> pending = new CompletableFuture<>();
+        bootstrap = pending;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    init(config);
+                    startup.record("bootstrap", start);
+                    LOGGER.info(startup);
+                    pending.complete(null);
+                } catch (Throwable ex) {
+                    LOGGER.error("Data session could not be initialized", ex);
+                    pending.completeExceptionally(ex);
+                }
+            }
+        }, "DataSession-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+        return pending;
+    }
+    /**
+     * Waits until the initialization started by {@link #initInBackground(core.config.AppConfig)
+     * initInBackground} completes. Returns right away if it already completed, or if the
+     * session is initialized synchronously. The first wait that actually blocks is recorded
+     * in the {@link #getStartupStatistics() startup statistics}.
+     * @throws IllegalStateException When the initialization failed
+     */
+    public void awaitInitialization() {
+        CompletableFuture<Void> pending = bootstrap;
+        if (pending == null || (pending.isDone() && !pending.isCompletedExceptionally()))
+            return;
+        long start = System.nanoTime();
+        boolean blocked = !pending.isDone();
+        try {
+            pending.join();
+        } catch (CompletionException ex) {
+            throw new IllegalStateException("Data session could not be initialized", ex.getCause());
+        } finally {
+            if (blocked && bootstrapWaitRecorded.compareAndSet(false, true))
+                startup.record("firstDataCallWait", start);
+        }
+    }
+    /**
+     * Returns the timing breakdown of the initialization of this session. The application
+     * can record its own startup phases in it.
+     * @return the startup statistics
+     */
+    public StartupStatistics getStartupStatistics() {
+        return startup;
+    }
+    /**
+     * Returns the session factory of the primary database, waiting until it's built if the
+     * session is being {@link #initInBackground(core.config.AppConfig) initialized in the background}.
+     * @return the session factory
+     * @throws IllegalStateException When the initialization failed
+     */
+    protected SessionFactory getSessionFactory() {
+        awaitInitialization();
+        return sessionFactory;
+    }
+
+    private static void applyCacheSettings(Configuration hibernateCfg, AppConfig config) {
+        String mode = config.getProperty(CACHE_MODE);
+        String strategy = config.getProperty(CACHE_CONCURRENCY_STRATEGY);
+        String regionFactory = config.getProperty(CACHE_REGION_FACTORY);
+        SharedCacheMode cacheMode;
+        try {
+            cacheMode = mode == null ? SharedCacheMode.ENABLE_SELECTIVE : SharedCacheMode.valueOf(mode.trim());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(String.format("Configuration key \"%s\" must be ALL or ENABLE_SELECTIVE, found \"%s\"", CACHE_MODE, mode), ex);
+        }
+        hibernateCfg.setSharedCacheMode(cacheMode);
+        hibernateCfg.setProperty("hibernate.cache.use_second_level_cache", "true");
+        hibernateCfg.setProperty("hibernate.cache.region.factory_class", regionFactory == null ? DEFAULT_CACHE_REGION_FACTORY : regionFactory);
+        hibernateCfg.setProperty("hibernate.cache.default_cache_concurrency_strategy", strategy == null ? DEFAULT_CACHE_CONCURRENCY_STRATEGY : strategy);
+        LOGGER.info(String.format("Second-level cache enabled for %s entities", cacheMode == SharedCacheMode.ALL ? "all" : "cacheable"));
+    }
+    /**
+     * Builds a session factory for every replica defined in the application configuration,
+     * with the same Hibernate configuration and pool settings as the primary database but
+     * without any schema generation.
+     * @param config Application configuration holding the replica definitions
+     * @throws IllegalArgumentException When a replica is missing its URL
+     */
+    protected void initReplicas(AppConfig config) {
+        int count = getInteger(config, REPLICA_COUNT, 0);
+        List<SessionFactory> replicas = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String url = config.getProperty(String.format(REPLICA_URL, i));
+            if (url == null)
+                throw new IllegalArgumentException(String.format("Configuration key \"%s\" is missing", String.format(REPLICA_URL, i)));
+            Configuration hibernateCfg = new Configuration();
+            hibernateCfg.configure();
+            int warmConnections = applySettings(hibernateCfg, config);
+            hibernateCfg.setProperty("hibernate.connection.url", url);
+            String user = config.getProperty(String.format(REPLICA_USER, i));
+            if (user != null)
+                hibernateCfg.setProperty("hibernate.connection.username", user);
+            String password = config.getProperty(String.format(REPLICA_PASSWORD, i));
+            if (password != null)
+                hibernateCfg.setProperty("hibernate.connection.password", password);
+            hibernateCfg.setProperty("hibernate.hbm2ddl.auto", "none");
+            SessionFactory replica = hibernateCfg.buildSessionFactory();
+            warmUpPool(replica, warmConnections);
+            replicas.add(replica);
+            LOGGER.info(String.format("Replica %d initialized at \"%s\"", i, url));
+        }
+        setReplicaFactories(replicas);
+    }
+    /**
+     * Sets the session factories of the read-only replicas, replacing the current ones
+     * without closing them. Meant for subclasses that build their factories themselves.
+     * @param replicas Factories of the replicas, may be empty
+     */
+    protected void setReplicaFactories(List<SessionFactory> replicas) {
+        AtomicInteger[] load = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < load.length; i++)
+            load[i] = new AtomicInteger();
+        replicaLoad = load;
+        replicaFactories = replicas.toArray(new SessionFactory[replicas.size()]);
+    }
+    /**
+     * Returns the number of read-only replicas reads can be routed to.
+     * @return the number of replicas
+     */
+    public int getReplicaCount() {
+        return replicaFactories.length;
+    }
+    /**
+     * Closes the session factories of the replicas. Implementations of {@link #close() close()}
+     * must call this method if they use replicas.
+     */
+    protected void closeReplicas() {
+        SessionFactory[] replicas = replicaFactories;
+        setReplicaFactories(new ArrayList<SessionFactory>());
+        for (SessionFactory replica : replicas)
+            replica.close();
+    }
+    /**
+     * Applies the connection pool, JDBC and second-level cache settings defined in the
+     * application configuration, see the {@code POOL_*}, {@code JDBC_*} and {@code CACHE_*}
+     * keys. The pool isn't set up if the Hibernate configuration already defines its own
+     * connection provider or data source.
+     * @param hibernateCfg Configuration being built
+     * @param config Application configuration holding the settings
+     * @return The number of connections the pool keeps at all times, or {@code 0} if no
+     * pool was set up
+     * @throws IllegalArgumentException When a setting isn't a valid number
+     */
+    protected int applySettings(Configuration hibernateCfg, AppConfig config) {
+        Integer fetchSize = getInteger(config, JDBC_FETCH_SIZE, null);
+        if (fetchSize != null)
+            hibernateCfg.setProperty("hibernate.jdbc.fetch_size", fetchSize.toString());
+        Integer batchSize = getInteger(config, JDBC_BATCH_SIZE, null);
+        if (batchSize != null) {
+            hibernateCfg.setProperty("hibernate.jdbc.batch_size", batchSize.toString());
+            hibernateCfg.setProperty("hibernate.order_inserts", "true");
+            hibernateCfg.setProperty("hibernate.order_updates", "true");
+        }
+        if (Boolean.parseBoolean(config.getProperty(CACHE_ENABLED)))
+            applyCacheSettings(hibernateCfg, config);
+        if (hibernateCfg.getProperty("hibernate.connection.provider_class") != null
+                || hibernateCfg.getProperty("hibernate.connection.datasource") != null) {
+            LOGGER.info("Connection provider defined by the Hibernate configuration, pool settings ignored");
+            return 0;
+        }
+        int minSize = getInteger(config, POOL_MIN_SIZE, DEFAULT_POOL_MIN_SIZE);
+        int maxSize = getInteger(config, POOL_MAX_SIZE, DEFAULT_POOL_MAX_SIZE);
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException(String.format("Invalid pool size, minimum %d and maximum %d", minSize, maxSize));
+        hibernateCfg.setProperty("hibernate.connection.provider_class", POOLED_PROVIDER);
+        hibernateCfg.setProperty("hibernate.c3p0.min_size", String.valueOf(minSize));
+        hibernateCfg.setProperty("hibernate.c3p0.max_size", String.valueOf(maxSize));
+        hibernateCfg.setProperty("hibernate.c3p0.initialPoolSize", String.valueOf(minSize));
+        hibernateCfg.setProperty("hibernate.c3p0.timeout", getInteger(config, POOL_IDLE_TIMEOUT, DEFAULT_POOL_IDLE_TIMEOUT).toString());
+        hibernateCfg.setProperty("hibernate.c3p0.max_statements",
+                getInteger(config, POOL_STATEMENT_CACHE_SIZE, DEFAULT_POOL_STATEMENT_CACHE_SIZE).toString());
+        LOGGER.info(String.format("Connection pool of %d to %d connections configured", minSize, maxSize));
+        return minSize;
+    }
+    /**
+     * Opens and releases the specified number of connections at once, so they're ready
+     * in the pool by the time the first query runs. Failures are only logged: the pool
+     * will retry when the connections are actually needed.
+     * @param factory Session factory which pool will be warmed
+     * @param connections Number of connections to open
+     */
+    protected void warmUpPool(SessionFactory factory, int connections) {
+        if (connections <= 0)
+            return;
+        long start = System.nanoTime();
+        ConnectionProvider provider = ((SessionFactoryImplementor) factory)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        List<Connection> opened = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++)
+                opened.add(provider.getConnection());
+            LOGGER.info(String.format("Connection pool warmed with %d connections in %d ms", connections,
+                    (System.nanoTime() - start) / 1000000));
+        } catch (Exception ex) {
+            LOGGER.warn("Connection pool could not be warmed", ex);
+        } finally {
+            for (Connection connection : opened) {
+                try {
+                    provider.closeConnection(connection);
+                } catch (Exception ex) {
+                    LOGGER.warn("Warm-up connection could not be released", ex);
+                }
+            }
+        }
+    }
+
+    private static Integer getInteger(AppConfig config, String key, Integer defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Configuration key \"%s\" must be an integer, found \"%s\"", key, value), ex);
+        }
     }
     /**
      * Closes the active session factory.
@@ -33,29 +432,391 @@ public abstract class AbstractDataSession {
      */
     public abstract void close() throws Exception;
     /**
-     * Begins a new transaction associated with the current session. The resulting
-     * transaction object is referenced by {@link AbstractDataSession#transaction AbstractDataSession.transaction}
-     * protected field
+     * Begins a new transaction associated with the current session. Implementations must
+     * begin, and {@link #commit() commit} and {@link #rollback() rollback} must finish, the
+     * transaction of the session bound to the calling thread, {@code getCurrentSession().getTransaction()},
+     * since several threads may run transactions at the same time. Nothing may be kept in
+     * fields of this object, like the deprecated {@link #transaction transaction} field.
      * @throws Exception When an error occurs while beginning a transaction
      */
     public abstract void beginTransaction() throws Exception;
     /**
-     * Commits the active transaction, if there is one.
+     * Commits the active transaction of the current session, if there is one.
      * @throws Exception When an error occurs while committing the transaction
      */
     public abstract void commit() throws Exception;
     /**
-     * Rollback the active transaction, if there is one.
+     * Rollback the active transaction of the current session, if there is one.
      * @throws Exception When an error occurs while rolling back the transaction
      */
     public abstract void rollback() throws Exception;
     /**
      * Returns the current session, as per the {@link SessionFactory#getCurrentSession() SessionFactory.getCurrentSession()}
      * method spec. This method is useful in the construction of very specific Hibernate
-     * operations, such as custom queries execution.
+     * operations, such as custom queries execution. Within an operation executed through
+     * {@link #executeReadOnly(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeReadOnly} the session of the chosen replica is returned instead.
      * @return A {@link Session} instance
      */
     public Session getCurrentSession() {
-        return sessionFactory.getCurrentSession();
+        Session session = readSession.get();
+        return session != null ? session : getSessionFactory().getCurrentSession();
+    }
+    /**
+     * Opens a new session, independent of the current one. It's meant for long running
+     * work that shouldn't fill the persistence context of the current session, such
+     * as streaming large results. The caller is responsible for closing it.
+     * @return A new {@link Session} instance
+     */
+    public Session openSession() {
+        return getSessionFactory().openSession();
+    }
+    /**
+     * Releases the session bound to the calling thread by the <i>thread</i> current session
+     * context, rolling back its transaction if it's still active. Threads that run data
+     * operations on behalf of others, like pooled workers, should call it after every task
+     * so the next one starts with a session of its own. Nothing is done when there's no
+     * session bound, or when the factory uses another current session context.
+     */
+    public void releaseCurrentSession() {
+        Session session = ThreadLocalSessionContext.unbind(getSessionFactory());
+        if (session == null || !session.isOpen())
+            return;
+        try {
+            if (session.getTransaction().getStatus() == TransactionStatus.ACTIVE)
+                session.getTransaction().rollback();
+        } finally {
+            session.close();
+        }
+    }
+    /**
+     * Executes the specified operation within a transaction. If the current session
+     * already has an active transaction the operation simply joins it; otherwise a new
+     * one is started through {@link #beginTransaction() beginTransaction()} and finished
+     * through {@link #commit() commit()}, or {@link #rollback() rollback()} if the operation
+     * fails.
+     * @param operation The operation to execute
+     * @param params Optional parameters that will be passed to the operation
+     * @return The value returned by the operation
+     * @throws Exception When the operation or the transaction handling fails
+     */
+    public Object executeInTransaction(AbstractTransactionOperation operation, Object... params) throws Exception {
+        Session replicaSession = readSession.get();
+        if (replicaSession != null) {
+            readSession.remove();
+            try {
+                return executeInTransaction(operation, params);
+            } finally {
+                readSession.set(replicaSession);
+            }
+        }
+        if (getCurrentSession().getTransaction().getStatus() == TransactionStatus.ACTIVE)
+            return operation.execute(params);
+        beginTransaction();
+        try {
+            Object result = operation.execute(params);
+            commit();
+            return result;
+        } catch (Exception ex) {
+            rollback();
+            throw ex;
+        }
+    }
+    /**
+     * Enables or disables group commit. While enabled, operations executed concurrently
+     * through {@link #executeGrouped(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeGrouped} are merged into a single transaction.
+     * @param maxOperations Maximum number of operations of a group, a value lower than 2
+     * disables group commit
+     * @param window Time the first operation of a group waits for others to join before
+     * the group is committed
+     * @param unit Unit of {@code window}
+     */
+    public void setGroupCommit(int maxOperations, long window, TimeUnit unit) {
+        if (window < 0)
+            throw new IllegalArgumentException("Group commit window can't be negative");
+        groupCommitWindowNanos = unit.toNanos(window);
+        groupCommitSize = maxOperations < 2 ? 0 : maxOperations;
+        if (groupCommitSize > 0)
+            LOGGER.info(String.format("Group commit of up to %d operations within %d us enabled", maxOperations,
+                    unit.toMicros(window)));
+    }
+    /**
+     * Indicates whether group commit is enabled.
+     * @return {@code true} if concurrent grouped operations share transactions
+     */
+    public boolean isGroupCommitEnabled() {
+        return groupCommitSize > 0;
+    }
+    /**
+     * Executes the specified operation within a transaction that may be shared with other
+     * operations, so they pay for a single commit. The first operation to arrive opens a
+     * group and waits for the group commit window to elapse, or for the group to fill up;
+     * meanwhile the operations executed by other threads join the group. Then the first
+     * thread executes every operation of the group, in arrival order, in a single transaction,
+     * while the others wait for their own result. If any operation of the group fails, or
+     * the commit does, the transaction is rolled back and every operation is executed again,
+     * each in a transaction of its own, so an error only reaches the caller whose operation
+     * caused it.
+     * <p>Since operations may run on another thread, and more than once, they must only
+     * reach the database through {@link #getCurrentSession() getCurrentSession()}, must
+     * not depend on thread-local state, and must be safe to execute again after a rollback.
+     * Operations execute like in {@link #executeInTransaction(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeInTransaction} when group commit is disabled, or when the calling thread is
+     * already executing an operation.</p>
+     * @param operation The operation to execute
+     * @param params Optional parameters that will be passed to the operation
+     * @return The value returned by the operation
+     * @throws Exception When the operation fails, even when executed alone, or when its
+     * transaction can't be committed
+     * @see #setGroupCommit(int, long, java.util.concurrent.TimeUnit)
+     */
+    public Object executeGrouped(AbstractTransactionOperation operation, Object... params) throws Exception {
+        int maxOperations = groupCommitSize;
+        if (maxOperations == 0 || readSession.get() != null || statelessSession.get() != null || isTransactionActive())
+            return executeInTransaction(operation, params);
+        GroupMember member = new GroupMember(operation, params);
+        CommitGroup group;
+        boolean leader = false;
+        synchronized (groupLock) {
+            if (openGroup == null) {
+                openGroup = new CommitGroup();
+                leader = true;
+            }
+            group = openGroup;
+            group.members.add(member);
+            if (group.members.size() >= maxOperations) {
+                openGroup = null;
+                groupLock.notifyAll();
+            }
+        }
+        if (leader) {
+            boolean interrupted = awaitMembers(group);
+            commitGroup(group.members);
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        return member.await();
+    }
+    /**
+     * Waits until the group is full or its window elapses, and closes it to new members.
+     * The wait is never cut short, since other threads depend on the group being committed.
+     */
+    private boolean awaitMembers(CommitGroup group) {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + groupCommitWindowNanos;
+        synchronized (groupLock) {
+            long remaining;
+            while (openGroup == group && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(groupLock, remaining);
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (openGroup == group)
+                openGroup = null;
+        }
+        return interrupted;
+    }
+
+    private void commitGroup(final List<GroupMember> members) {
+        try {
+            if (members.size() > 1) {
+                try {
+                    executeInTransaction(new AbstractTransactionOperation() {
+                        @Override
+                        public Object execute(Object... params) {
+                            for (GroupMember member : members)
+                                member.result = member.operation.execute(member.params);
+                            return null;
+                        }
+                    });
+                    return;
+                } catch (Exception ex) {
+                    LOGGER.debug(String.format("Group of %d operations failed, committing them one at a time", members.size()), ex);
+                }
+            }
+            for (GroupMember member : members) {
+                try {
+                    member.result = executeInTransaction(member.operation, member.params);
+                } catch (Exception ex) {
+                    member.result = null;
+                    member.error = ex;
+                }
+            }
+        } catch (Error ex) {
+            for (GroupMember member : members) {
+                if (member.error == null)
+                    member.error = new Exception("Group commit aborted", ex);
+            }
+            throw ex;
+        } finally {
+            for (GroupMember member : members)
+                member.done.countDown();
+        }
+    }
+    /**
+     * Indicates whether the current session of the primary database has an active
+     * transaction, in which case reads must see its uncommitted writes.
+     * @return {@code true} if a transaction is active on the calling thread
+     */
+    public boolean isTransactionActive() {
+        return getSessionFactory().getCurrentSession().getTransaction().getStatus() == TransactionStatus.ACTIVE;
+    }
+    /**
+     * Executes the specified read-only operation on one of the replicas, in a read-only
+     * session of its own. The replica with the fewest operations in progress is chosen,
+     * ties being broken in round-robin order. The operation runs on the primary database
+     * instead, through {@link #executeInTransaction(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeInTransaction}, when there are no replicas, when the current session already
+     * has an active transaction (so it sees its own uncommitted writes), or when the
+     * chosen replica can't be reached. Writes nested in the operation also go to the primary.
+     * <p>Replicas may lag behind the primary database, so data written right before might
+     * not be returned yet.</p>
+     * @param operation The operation to execute
+     * @param params Optional parameters that will be passed to the operation
+     * @return The value returned by the operation
+     * @throws Exception When the operation or the transaction handling fails
+     */
+    public Object executeReadOnly(AbstractTransactionOperation operation, Object... params) throws Exception {
+        if (readSession.get() != null)
+            return operation.execute(params);
+        awaitInitialization();
+        SessionFactory[] replicas = replicaFactories;
+        AtomicInteger[] load = replicaLoad;
+        if (replicas.length == 0 || isTransactionActive())
+            return executeInTransaction(operation, params);
+        int replica = pickReplica(load);
+        Session session = null;
+        Transaction tx;
+        try {
+            session = replicas[replica].openSession();
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            tx = session.beginTransaction();
+        } catch (RuntimeException ex) {
+            LOGGER.warn(String.format("Replica %d unavailable, reading from the primary database", replica + 1), ex);
+            if (session != null)
+                session.close();
+            return executeInTransaction(operation, params);
+        }
+        load[replica].incrementAndGet();
+        readSession.set(session);
+        try {
+            Object result = operation.execute(params);
+            tx.commit();
+            return result;
+        } catch (Exception ex) {
+            tx.rollback();
+            throw ex;
+        } finally {
+            readSession.remove();
+            load[replica].decrementAndGet();
+            session.close();
+        }
+    }
+
+    private int pickReplica(AtomicInteger[] load) {
+        int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % load.length;
+        int chosen = start;
+        for (int i = 1; i < load.length; i++) {
+            int candidate = (start + i) % load.length;
+            if (load[candidate].get() < load[chosen].get())
+                chosen = candidate;
+        }
+        return chosen;
+    }
+    /**
+     * Executes the specified operation in a {@link StatelessSession} of its own, within a
+     * transaction of that session. Meant for inserting, updating or deleting large streams
+     * of entities: a stateless session has no persistence context, so there's no first
+     * level cache filling up and no dirty checking, and every operation is sent to the
+     * database right away, in JDBC batches when the factory enables them. There are no
+     * cascades, interceptors or events either, and collections aren't handled.
+     * <p>Within the operation the session is returned by {@link #getStatelessSession() getStatelessSession()}.
+     * It uses its own connection, so it doesn't take part in the transaction of the current
+     * session. Nested calls join the outer stateless session.</p>
+     * @param operation The operation to execute
+     * @param params Optional parameters that will be passed to the operation
+     * @return The value returned by the operation
+     * @throws Exception When the operation or the transaction handling fails; the transaction
+     * is rolled back
+     */
+    public Object executeStateless(AbstractTransactionOperation operation, Object... params) throws Exception {
+        if (statelessSession.get() != null)
+            return operation.execute(params);
+        StatelessSession session = getSessionFactory().openStatelessSession();
+        statelessSession.set(session);
+        try {
+            Transaction tx = session.beginTransaction();
+            try {
+                Object result = operation.execute(params);
+                tx.commit();
+                return result;
+            } catch (Exception ex) {
+                tx.rollback();
+                throw ex;
+            }
+        } finally {
+            statelessSession.remove();
+            session.close();
+        }
+    }
+    /**
+     * Returns the stateless session of the operation being executed through
+     * {@link #executeStateless(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+     * executeStateless} on the calling thread.
+     * @return A {@link StatelessSession} instance
+     * @throws IllegalStateException When called outside a stateless operation
+     */
+    public StatelessSession getStatelessSession() {
+        StatelessSession session = statelessSession.get();
+        if (session == null)
+            throw new IllegalStateException("No stateless operation is being executed");
+        return session;
+    }
+    /**
+     * Operations merged into a single transaction, in arrival order.
+     */
+    private static class CommitGroup {
+
+        private final List<GroupMember> members = new ArrayList<>();
+    }
+    /**
+     * Operation of a commit group, along with its outcome.
+     */
+    private static class GroupMember {
+
+        private final AbstractTransactionOperation operation;
+        private final Object[] params;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Object result;
+        private Exception error;
+
+        GroupMember(AbstractTransactionOperation operation, Object[] params) {
+            this.operation = operation;
+            this.params = params;
+        }
+        /**
+         * Waits until the group is committed, even if interrupted meanwhile, since the
+         * operation is executed anyway.
+         */
+        Object await() throws Exception {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            if (error != null)
+                throw error;
+            return result;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package core.data.session;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing breakdown of the startup of an application, phase by phase. The phases of the
+ * initialization of an {@link AbstractDataSession} are recorded by the session itself;
+ * the application can record its own, such as building and displaying the main frame,
+ * through {@link #record(java.lang.String, long) record}. Phases may run concurrently,
+ * so each one is reported with its offset since the statistics were created, besides its
+ * duration. Instances are updated concurrently and can be read from any thread.
+ * @author Rene Vera Apale
+ */
+public class StartupStatistics {
+
+    private final long origin;
+    private final long jvmUptimeMillis;
+    private final List<Phase> phases;
+    /**
+     * Initializes empty statistics, whose offsets are measured from now.
+     */
+    public StartupStatistics() {
+        this.origin = System.nanoTime();
+        this.jvmUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.phases = new ArrayList<>();
+    }
+    /**
+     * Records a phase that finishes now.
+     * @param phase Name of the phase
+     * @param startNanos Value of {@link System#nanoTime()} when the phase started
+     */
+    public void record(String phase, long startNanos) {
+        record(phase, startNanos, System.nanoTime());
+    }
+    /**
+     * Records a phase. Recording a phase again adds a new entry, it doesn't replace the
+     * previous one.
+     * @param phase Name of the phase
+     * @param startNanos Value of {@link System#nanoTime()} when the phase started
+     * @param endNanos Value of {@link System#nanoTime()} when the phase finished
+     */
+    public synchronized void record(String phase, long startNanos, long endNanos) {
+        phases.add(new Phase(phase, Thread.currentThread().getName(), startNanos - origin, endNanos - startNanos));
+    }
+    /**
+     * Returns the duration of a phase, adding up every entry recorded with its name.
+     * @param phase Name of the phase
+     * @param unit Unit of the returned value
+     * @return the duration of the phase, or {@code -1} if it wasn't recorded
+     */
+    public synchronized long getDuration(String phase, TimeUnit unit) {
+        long total = -1;
+        for (Phase entry : phases) {
+            if (entry.name.equals(phase))
+                total = Math.max(total, 0) + entry.duration;
+        }
+        return total < 0 ? -1 : unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+    /**
+     * Returns the duration of every phase, in the order they finished.
+     * @param unit Unit of the returned values
+     * @return the duration of each phase by name, entries with the same name added up
+     */
+    public synchronized Map<String, Long> getDurations(TimeUnit unit) {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (Phase entry : phases) {
+            Long previous = durations.get(entry.name);
+            durations.put(entry.name, (previous == null ? 0 : previous) + entry.duration);
+        }
+        for (Map.Entry<String, Long> entry : durations.entrySet())
+            entry.setValue(unit.convert(entry.getValue(), TimeUnit.NANOSECONDS));
+        return durations;
+    }
+    /**
+     * Returns the time the JVM had been running when the statistics were created, which
+     * covers the launch of the JVM and everything the application did before.
+     * @param unit Unit of the returned value
+     * @return the uptime of the JVM when the statistics were created
+     */
+    public long getJvmUptime(TimeUnit unit) {
+        return unit.convert(jvmUptimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder report = new StringBuilder("Startup phases (JVM uptime at start ")
+                .append(jvmUptimeMillis).append(" ms):");
+        for (Phase entry : phases) {
+            report.append(String.format("%n  %-28s %6d ms  (+%d ms, %s)", entry.name,
+                    TimeUnit.NANOSECONDS.toMillis(entry.duration), TimeUnit.NANOSECONDS.toMillis(entry.offset), entry.thread));
+        }
+        return report.toString();
+    }
+    /**
+     * Recorded phase, with its offset and duration in nanoseconds.
+     */
+    private static class Phase {
+
+        private final String name;
+        private final String thread;
+        private final long offset;
+        private final long duration;
+
+        Phase(String name, String thread, long offset, long duration) {
+            this.name = name;
+            this.thread = thread;
+            this.offset = offset;
+            this.duration = duration;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package core.data.session;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.TransactionException;
+import org.hibernate.exception.LockAcquisitionException;
+
+/**
+ * Runs {@link AbstractTransactionOperation operations} in transactions of an {@link AbstractDataSession},
+ * repeating the ones that fail because of a transient conflict with concurrent transactions:
+ * deadlocks, lock timeouts and serialization failures. Every attempt runs in a transaction
+ * of its own, begun, committed and rolled back through
+ * {@link AbstractDataSession#executeInTransaction(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+ * executeInTransaction}, and attempts are separated by a random pause that grows
+ * exponentially, so the transactions that collided don't collide again.
+ * <p>Operations must be safe to execute more than once: anything they change outside the
+ * database, including the state of the entities passed as parameters, is not undone when
+ * an attempt is rolled back. Operations called while the current session already has an
+ * active transaction join it and are never repeated, since only the outermost transaction
+ * can be retried.</p>
+ * <p>A timeout, when set, bounds the whole operation: it's applied to the statements of every
+ * attempt, with a margin of a second since statement timeouts are whole seconds, an attempt
+ * that finishes after it is rolled back instead of committed, and no further attempt is made
+ * once it expires. Instances are thread-safe, and their
+ * configuration should be set before they're shared.</p>
+ * @author Rene Vera Apale
+ */
+public class TransactionExecutor {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+    private static final Set<String> TRANSIENT_SQL_STATES = new HashSet<>(Arrays.asList(
+            "40001", // serialization failure, also reported for deadlocks by several databases
+            "40P01" // deadlock detected (PostgreSQL)
+    ));
+    private static final Set<Integer> TRANSIENT_ERROR_CODES = new HashSet<>(Arrays.asList(
+            1205, // lock wait timeout exceeded (MySQL)
+            1213 // deadlock found when trying to get lock (MySQL)
+    ));
+
+    private final AbstractDataSession dataSession;
+    private final TransactionStatistics statistics;
+    private int maxAttempts = 3;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(20);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+    private long timeoutNanos;
+    /**
+     * Initializes an executor that makes up to 3 attempts, pausing between 20 milliseconds
+     * and 1 second, without timeout.
+     * @param dataSession Data session whose transactions will be used
+     */
+    public TransactionExecutor(AbstractDataSession dataSession) {
+        this.dataSession = dataSession;
+        this.statistics = new TransactionStatistics();
+    }
+    /**
+     * Sets the maximum number of times an operation is executed, counting the first attempt.
+     * @param maxAttempts The maximum number of attempts, {@code 1} disables retries
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("Maximum number of attempts must be greater than zero");
+        this.maxAttempts = maxAttempts;
+    }
+    /**
+     * Returns the maximum number of times an operation is executed.
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    /**
+     * Sets the bounds of the pause between attempts. The pause before the n-th retry is
+     * random, between zero and {@code initial * 2^(n-1)}, never longer than {@code max}.
+     * @param initial Upper bound of the pause before the first retry
+     * @param max Upper bound of any pause
+     * @param unit Unit of both bounds
+     */
+    public void setBackoff(long initial, long max, TimeUnit unit) {
+        if (initial < 0 || max < initial)
+            throw new IllegalArgumentException("Backoff bounds must be positive and ordered");
+        this.initialBackoffNanos = unit.toNanos(initial);
+        this.maxBackoffNanos = unit.toNanos(max);
+    }
+    /**
+     * Sets the time limit of every operation, including all of its attempts.
+     * @param timeout The time limit, {@code 0} for none, which is the default
+     * @param unit Unit of {@code timeout}
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout can't be negative");
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+    /**
+     * Returns the time limit of every operation.
+     * @param unit Unit of the returned value
+     * @return the time limit, {@code 0} if there's none
+     */
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+    /**
+     * Returns the figures of the operations run by this executor.
+     * @return the statistics of this executor
+     */
+    public TransactionStatistics getStatistics() {
+        return statistics;
+    }
+    /**
+     * Executes the specified operation in a transaction, retrying it on transient errors.
+     * @param operation The operation to execute
+     * @param params Optional parameters that will be passed to the operation
+     * @return The value returned by the successful attempt
+     * @throws Exception The error of the last attempt, when every attempt failed, the error
+     * isn't transient, or the operation ran out of time. A {@link TransactionException}
+     * is thrown when an attempt finished after the timeout
+     */
+    public Object execute(final AbstractTransactionOperation operation, Object... params) throws Exception {
+        long start = System.nanoTime();
+        int attempts = 0;
+        boolean failed = true;
+        try {
+            if (dataSession.isTransactionActive()) {
+                attempts++;
+                Object result = dataSession.executeInTransaction(operation, params);
+                failed = false;
+                return result;
+            }
+            while (true) {
+                attempts++;
+                try {
+                    Object result = executeAttempt(operation, start, params);
+                    failed = false;
+                    return result;
+                } catch (Exception ex) {
+                    if (attempts >= maxAttempts || !isTransient(ex))
+                        throw ex;
+                    long pause = backoff(attempts);
+                    if (timeoutNanos > 0 && System.nanoTime() - start + pause >= timeoutNanos)
+                        throw ex;
+                    LOGGER.debug(String.format("Transient error on attempt %d, retrying in %d ms", attempts,
+                            TimeUnit.NANOSECONDS.toMillis(pause)), ex);
+                    TimeUnit.NANOSECONDS.sleep(pause);
+                }
+            }
+        } finally {
+            long latency = System.nanoTime() - start;
+            statistics.record(latency, attempts, failed, failed && timeoutNanos > 0 && latency >= timeoutNanos);
+        }
+    }
+    /**
+     * Indicates whether the specified error is a transient conflict with other transactions,
+     * so the failed transaction may succeed if repeated. The whole chain of causes is
+     * inspected, looking for Hibernate lock errors or for SQL states and vendor codes of
+     * deadlocks, lock timeouts and serialization failures. Subclasses can extend it to
+     * recognize other errors.
+     * @param error The error thrown by an attempt
+     * @return {@code true} if the operation should be retried
+     */
+    protected boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LockAcquisitionException || cause instanceof PessimisticLockException)
+                return true;
+            if (cause instanceof SQLException) {
+                SQLException sqlError = (SQLException) cause;
+                if (TRANSIENT_SQL_STATES.contains(sqlError.getSQLState())
+                        || TRANSIENT_ERROR_CODES.contains(sqlError.getErrorCode()))
+                    return true;
+            }
+            if (cause.getCause() == cause)
+                break;
+        }
+        return false;
+    }
+
+    private Object executeAttempt(final AbstractTransactionOperation operation, final long start, Object... params) throws Exception {
+        if (timeoutNanos == 0)
+            return dataSession.executeInTransaction(operation, params);
+        long remaining = timeoutNanos - (System.nanoTime() - start);
+        // Hibernate truncates the time left to whole seconds before every statement and
+        // fails the statement once that reaches zero, so it's given an extra second; the
+        // deadline itself is enforced below
+        int seconds = (int) TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1) + 1;
+        dataSession.getCurrentSession().getTransaction().setTimeout(seconds);
+        return dataSession.executeInTransaction(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                Object result = operation.execute(params);
+                if (System.nanoTime() - start >= timeoutNanos)
+                    throw new TransactionException(String.format("Transaction timed out after %d ms",
+                            TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+                return result;
+            }
+        }, params);
+    }
+
+    private long backoff(int attempt) {
+        long bound = initialBackoffNanos << Math.min(attempt - 1, 30);
+        if (bound <= 0 || bound > maxBackoffNanos)
+            bound = maxBackoffNanos;
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound);
+    }
+}
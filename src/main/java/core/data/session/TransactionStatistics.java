@@ -0,0 +1,94 @@
+package core.data.session;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Figures of the operations run by a {@link TransactionExecutor}, accumulated since it was
+ * created. The <i>latency</i> of an operation is the time since it was submitted until it
+ * finished, and includes every attempt and the pauses between them. Instances are updated
+ * concurrently and can be read from any thread.
+ * @author Rene Vera Apale
+ */
+public class TransactionStatistics {
+
+    private long count;
+    private long attempts;
+    private long failures;
+    private long timeouts;
+    private long totalLatency;
+    private long maxLatency;
+    /**
+     * Records the outcome of an operation.
+     * @param latencyNanos Time since the operation was submitted until it finished, in nanoseconds
+     * @param attempts Number of times the operation was executed
+     * @param failed {@code true} if the operation ended with an error
+     * @param timedOut {@code true} if the error was the operation running out of time
+     */
+    public synchronized void record(long latencyNanos, int attempts, boolean failed, boolean timedOut) {
+        count++;
+        this.attempts += attempts;
+        if (failed)
+            failures++;
+        if (timedOut)
+            timeouts++;
+        totalLatency += latencyNanos;
+        maxLatency = Math.max(maxLatency, latencyNanos);
+    }
+    /**
+     * Returns the number of operations that finished, successfully or not.
+     * @return the number of finished operations
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+    /**
+     * Returns the number of times the finished operations were executed, counting the
+     * first attempt of each one.
+     * @return the number of attempts
+     */
+    public synchronized long getAttempts() {
+        return attempts;
+    }
+    /**
+     * Returns the number of attempts that were repeated because of a transient error.
+     * @return the number of retries
+     */
+    public synchronized long getRetries() {
+        return attempts - count;
+    }
+    /**
+     * Returns the number of operations that ended with an error, after every attempt they
+     * were allowed.
+     * @return the number of failed operations
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+    /**
+     * Returns the number of operations that failed because they ran out of time.
+     * @return the number of timed out operations
+     */
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+    /**
+     * Returns the average latency of the finished operations.
+     * @return the average latency in milliseconds, or {@code 0} if no operation finished yet
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return count == 0 ? 0 : (double) totalLatency / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    /**
+     * Returns the highest latency of the finished operations.
+     * @return the highest latency in milliseconds
+     */
+    public synchronized double getMaxLatencyMillis() {
+        return (double) maxLatency / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("count=%d, attempts=%d, failures=%d, timeouts=%d, avgLatency=%.1fms, maxLatency=%.1fms",
+                count, attempts, failures, timeouts, getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
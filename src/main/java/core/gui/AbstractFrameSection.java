@@ -0,0 +1,94 @@
+package core.gui;
+
+import core.data.session.AbstractDataSession;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Part of an {@link AbstractInternalFrame} whose data is prepared in the background, such
+ * as a catalog of a combo box or the initial rows of a table. The frame is displayed with
+ * the section showing a placeholder, the data is loaded on a worker thread, and the section
+ * is filled in on the Event Dispatch Thread as soon as its data is ready, independently of
+ * the other sections of the frame.
+ * <p>Sections that load their data through an {@link AbstractDataSession} should be given
+ * that session, so the session the worker thread opened is released once the data is
+ * loaded instead of being left bound to the pooled thread.</p>
+ * @author Rene Vera Apale
+ * @param <V> Type of the data of the section
+ */
+public abstract class AbstractFrameSection<V> {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+
+    private final String name;
+    private final AbstractDataSession dataSession;
+    /**
+     * Initializes a section that doesn't load its data through an {@link AbstractDataSession}.
+     * @param name Description of the section, shown to the user if its data can't be loaded
+     */
+    public AbstractFrameSection(String name) {
+        this(name, null);
+    }
+    /**
+     * Initializes a section whose data is loaded through the specified session.
+     * @param name Description of the section, shown to the user if its data can't be loaded
+     * @param dataSession Session used by {@link #load() load}, whose current session is
+     * released on the worker thread after every load
+     */
+    public AbstractFrameSection(String name, AbstractDataSession dataSession) {
+        this.name = name;
+        this.dataSession = dataSession;
+    }
+    /**
+     * Returns the description of the section.
+     * @return the name of the section
+     */
+    public String getName() {
+        return name;
+    }
+    /**
+     * Shows the section as being loaded, for instance by disabling its components or
+     * displaying a message in them. Runs on the Event Dispatch Thread every time the
+     * frame starts loading its sections. Does nothing by default.
+     */
+    protected void showPlaceholder() {
+    }
+    /**
+     * Loads the data of the section. Runs on a worker thread, so it must not read or modify
+     * any component. If the frame is closed meanwhile, the load isn't interrupted but its
+     * result is discarded.
+     * @return The data of the section
+     * @throws Exception When the data can't be loaded
+     */
+    protected abstract V load() throws Exception;
+    /**
+     * Fills in the section with its data. Runs on the Event Dispatch Thread, and only if
+     * the frame didn't cancel the loading.
+     * @param data Value returned by {@link #load() load}
+     * @throws Exception When the data can't be displayed
+     */
+    protected abstract void display(V data) throws Exception;
+    /**
+     * Reports that the section couldn't be loaded or displayed. Runs on the Event Dispatch
+     * Thread. By default, the error is logged and shown to the user.
+     * @param error The error thrown by {@link #load() load} or {@link #display(java.lang.Object) display}
+     */
+    protected void showFailure(Exception error) {
+        LOGGER.error(String.format("Section \"%s\" could not be loaded", name), error);
+        MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error",
+                String.format("No fue posible cargar %s", name), error);
+    }
+    /**
+     * Releases the session bound to the worker thread by {@link #load() load}, if the
+     * section was given a data session. Runs on the worker thread after every load.
+     */
+    void releaseSession() {
+        if (dataSession == null)
+            return;
+        try {
+            dataSession.releaseCurrentSession();
+        } catch (RuntimeException ex) {
+            LOGGER.warn(String.format("Session of section \"%s\" could not be released", name), ex);
+        }
+    }
+}
@@ -1,24 +1,243 @@
 package core.gui;
 
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JInternalFrame;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 /**
  * Enforces the creation of views for MDI application to use a single constructor,
  * which references the main parent.
+ * <p>Data that takes long to load, such as catalogs and initial grids, should not be loaded
+ * by {@link #prepareForDisplay() prepareForDisplay()}, which delays the display of the frame,
+ * but by {@link AbstractFrameSection sections} added with {@link #addSection(core.gui.AbstractFrameSection) addSection}.
+ * When the frame is opened by {@link AbstractMainAppFrame#openFrame(java.lang.String) openFrame},
+ * it's displayed right away, with every section showing its placeholder, and each section is
+ * filled in as soon as its data is loaded in the background. Loading is cancelled if the
+ * frame is closed before it completes.</p>
  * @author Rene Vera Apale
  */
 public abstract class AbstractInternalFrame extends JInternalFrame {
 
+    private static final int LOADER_THREADS = 4;
+    private static final ThreadPoolExecutor LOADERS = createLoaders();
+
     protected final AbstractMainAppFrame mainFrame;
+    private final List<AbstractFrameSection<?>> sections;
+    private final List<Future<?>> pendingLoads;
+    private long loadSequence;
+    private int pendingSections;
     /**
      * Initializes an internal frame with a reference to its main container
      * @param mainFrame The main container for the application.
      */
     public AbstractInternalFrame(AbstractMainAppFrame mainFrame) {
         this.mainFrame = mainFrame;
+        this.sections = new ArrayList<>();
+        this.pendingLoads = new ArrayList<>();
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent evt) {
+                cancelLoading();
+            }
+        });
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent evt) {
+                if (!isVisible())
+                    cancelLoading();
+            }
+        });
     }
     /**
      * Method executed just before the frame is displayed to the user.
      */
     public abstract void prepareForDisplay();
-}
\ No newline at end of file
+    /**
+     * Adds a section whose data is loaded in the background every time the frame is opened.
+     * Usually called from the constructor.
+     * @param section The section to add
+     */
+    protected void addSection(AbstractFrameSection<?> section) {
+        sections.add(section);
+    }
+    /**
+     * Starts loading every section of the frame, cancelling the loading in progress, if any.
+     * Each section shows its placeholder right away, and is filled in on the Event Dispatch
+     * Thread once its data is loaded. Called by the main frame after displaying the frame;
+     * frames displayed by other means must call it themselves. Must be called on the Event
+     * Dispatch Thread.
+     */
+    public void loadSections() {
+        cancelLoading();
+        if (sections.isEmpty())
+            return;
+        long sequence = loadSequence;
+        pendingSections = sections.size();
+        for (AbstractFrameSection<?> section : sections)
+            section.showPlaceholder();
+        ExecutorService executor = getSectionExecutor();
+        for (AbstractFrameSection<?> section : sections) {
+            try {
+                pendingLoads.add(executor.submit(loader(section, sequence)));
+            } catch (RejectedExecutionException ex) {
+                sectionLoaded(sequence, section, null, ex);
+            }
+        }
+    }
+    /**
+     * Cancels the loading of the sections. Loads not started yet are dropped, and the ones
+     * already running are left to finish but their data is discarded. Sections not loaded
+     * yet keep showing their placeholders. Called automatically when the frame is closed.
+     */
+    public void cancelLoading() {
+        loadSequence++;
+        for (Future<?> load : pendingLoads)
+            load.cancel(false);
+        pendingLoads.clear();
+        pendingSections = 0;
+    }
+    /**
+     * Indicates whether some section is still being loaded.
+     * @return {@code true} if the loading started by {@link #loadSections() loadSections()}
+     * hasn't completed nor been cancelled
+     */
+    public boolean isLoading() {
+        return pendingSections > 0;
+    }
+    /**
+     * Method executed on the Event Dispatch Thread once every section has been loaded and
+     * displayed, or has failed. Does nothing by default.
+     */
+    protected void sectionsLoaded() {
+    }
+    /**
+     * Returns the executor that loads the sections. By default, a small pool of daemon
+     * threads shared by every frame.
+     * @return the executor of the section loads
+     */
+    protected ExecutorService getSectionExecutor() {
+        return LOADERS;
+    }
+    /**
+     * Returns the number of rows held in memory by the data models of this frame, used by
+     * the main frame to decide which frames to evict. By default, the rows of the
+     * {@link RichDataModel RichDataModels} of the tables placed in the frame are counted.
+     * @return the number of rows held by this frame
+     */
+    public int getLoadedRowCount() {
+        int rows = 0;
+        for (RichDataModel<?> model : getDataModels())
+            rows += model.getLoadedRowCount();
+        return rows;
+    }
+    /**
+     * Method executed when the main frame evicts this frame, just before disposing it. By
+     * default, it cancels the loading of the sections and releases the data of the
+     * {@link RichDataModel RichDataModels} of the tables placed in the frame. Frames that
+     * hold data elsewhere must override it to release that data as well, calling this
+     * implementation too.
+     */
+    public void releaseResources() {
+        cancelLoading();
+        for (RichDataModel<?> model : getDataModels())
+            model.releaseData();
+    }
+    /**
+     * Returns the {@link RichDataModel RichDataModels} of the tables placed in this frame.
+     * @return The data models, in component order
+     */
+    protected List<RichDataModel<?>> getDataModels() {
+        List<RichDataModel<?>> models = new ArrayList<>();
+        collectDataModels(getContentPane(), models);
+        return models;
+    }
+
+    private <V> Runnable loader(final AbstractFrameSection<V> section, final long sequence) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                V data = null;
+                Exception failure = null;
+                try {
+                    data = section.load();
+                } catch (Exception ex) {
+                    failure = ex;
+                } finally {
+                    section.releaseSession();
+                }
+                final V loaded = data;
+                final Exception loadFailure = failure;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        sectionLoaded(sequence, section, loaded, loadFailure);
+                    }
+                });
+            }
+        };
+    }
+    /**
+     * Displays a loaded section, unless its loading was cancelled meanwhile.
+     */
+    private <V> void sectionLoaded(long sequence, AbstractFrameSection<V> section, V data, Exception failure) {
+        if (sequence != loadSequence)
+            return;
+        if (failure == null) {
+            try {
+                section.display(data);
+            } catch (Exception ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null)
+            section.showFailure(failure);
+        if (--pendingSections == 0) {
+            pendingLoads.clear();
+            sectionsLoaded();
+        }
+    }
+
+    private static ThreadPoolExecutor createLoaders() {
+        ThreadPoolExecutor loaders = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "InternalFrame-loader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        loaders.allowCoreThreadTimeOut(true);
+        return loaders;
+    }
+
+    private static void collectDataModels(Container container, List<RichDataModel<?>> models) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof JTable && ((JTable) component).getModel() instanceof RichDataModel) {
+                RichDataModel<?> model = (RichDataModel<?>) ((JTable) component).getModel();
+                if (!models.contains(model))
+                    models.add(model);
+            }
+            if (component instanceof Container)
+                collectDataModels((Container) component, models);
+        }
+    }
+}
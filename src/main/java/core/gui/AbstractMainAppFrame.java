@@ -1,25 +1,132 @@
 package core.gui;
 
 import core.config.AppConfig;
+import core.config.ConfigSetting;
+import java.awt.Container;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.beans.PropertyVetoException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JDesktopPane;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * Class from which the application main frame must inherit in order to provide
  * the MDI functions and shared global configuration capabilities.
+ * <p>Child frames are registered by name along with the {@link IInternalFrameFactory factory}
+ * that creates them, and opened with {@link #openFrame(java.lang.String) openFrame}, which
+ * creates the frame the first time, runs its {@link AbstractInternalFrame#prepareForDisplay() prepareForDisplay()},
+ * shows it in the {@link #setDesktop(javax.swing.JDesktopPane) desktop} and then loads its
+ * {@link AbstractFrameSection sections} in the background. Closing a frame
+ * that would be disposed on close only hides it, so opening it again is fast, but closed
+ * frames are evicted, releasing their data, once they exceed the budget set by
+ * {@link #setFrameBudget(int, long, long, java.util.concurrent.TimeUnit) setFrameBudget}
+ * or by the configuration keys {@value #MAX_RETAINED_FRAMES}, {@value #MAX_RETAINED_ROWS}
+ * and {@value #FRAME_IDLE_TIMEOUT}. Open frames are never evicted. Every method dealing
+ * with child frames must be called on the Event Dispatch Thread.</p>
  * @author Rene Vera Apale
  */
 public class AbstractMainAppFrame extends JFrame {
+    /**
+     * Configuration key holding the maximum number of closed frames kept in memory.
+     */
+    public static final String MAX_RETAINED_FRAMES = "ui.frames.maxRetained";
+    /**
+     * Configuration key holding the maximum number of rows held by the closed frames kept
+     * in memory, {@code 0} for no limit.
+     */
+    public static final String MAX_RETAINED_ROWS = "ui.frames.maxRetainedRows";
+    /**
+     * Configuration key holding the time after which a closed frame is evicted, {@code 0}
+     * to keep closed frames until the other limits are exceeded.
+     */
+    public static final String FRAME_IDLE_TIMEOUT = "ui.frames.idleTimeout";
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
 
     protected AppConfig configuration;
-    
+    /**
+     * Frames currently loaded, by name. Frames opened through {@link #openFrame(java.lang.String) openFrame}
+     * are added and removed by the main frame.
+     * @deprecated Frames stored here directly are never released; register them with
+     * {@link #registerFrame(java.lang.String, core.gui.IInternalFrameFactory) registerFrame} instead
+     */
+    @Deprecated
     protected final HashMap<String, AbstractInternalFrame> FRAMES = new HashMap<>();
+    private final Map<String, IInternalFrameFactory> factories = new HashMap<>();
+    private final LinkedHashMap<String, LoadedFrame> loadedFrames = new LinkedHashMap<>(16, 0.75f, true);
+    private final Timer idleTimer;
+    private JDesktopPane desktop;
+    private AppConfig.ChangeListener budgetListener;
+    private int maxRetainedFrames = 8;
+    private long maxRetainedRows;
+    private long idleTimeoutMillis;
+    private long evictions;
+    /**
+     * Initializes the main frame, keeping up to 8 closed frames in memory.
+     */
+    public AbstractMainAppFrame() {
+        idleTimer = new Timer(1000, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                enforceFrameBudget();
+            }
+        });
+    }
     /**
-     * Sets the global configuration that can be shared to all the child frames.
+     * Sets the global configuration that can be shared to all the child frames. The budget
+     * of closed frames is taken from the configuration, and updated whenever it changes.
      * @param cfg Global configuration object
+     * @throws IllegalArgumentException When the configuration holds an invalid budget
      */
     public void setConfig(AppConfig cfg) {
+        if (configuration != null && budgetListener != null)
+            configuration.removeChangeListener(budgetListener);
         configuration = cfg;
+        budgetListener = null;
+        if (cfg == null)
+            return;
+        final ConfigSetting.IntSetting maxFrames = cfg.intSetting(MAX_RETAINED_FRAMES, 8);
+        final ConfigSetting.LongSetting maxRows = cfg.longSetting(MAX_RETAINED_ROWS, 0);
+        final ConfigSetting.DurationSetting idleTimeout = cfg.durationSetting(FRAME_IDLE_TIMEOUT, Duration.ZERO);
+        setFrameBudget(maxFrames.getInt(), maxRows.getLong(), idleTimeout.getMillis(), TimeUnit.MILLISECONDS);
+        budgetListener = new AppConfig.ChangeListener() {
+            @Override
+            public void configurationChanged(AppConfig config, Set<String> changedKeys) {
+                if (!changedKeys.contains(MAX_RETAINED_FRAMES) && !changedKeys.contains(MAX_RETAINED_ROWS)
+                        && !changedKeys.contains(FRAME_IDLE_TIMEOUT))
+                    return;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            setFrameBudget(maxFrames.getInt(), maxRows.getLong(), idleTimeout.getMillis(), TimeUnit.MILLISECONDS);
+                        } catch (IllegalArgumentException ex) {
+                            LOGGER.warn("Invalid budget for closed frames, keeping the current one", ex);
+                        }
+                    }
+                });
+            }
+        };
+        cfg.addChangeListener(budgetListener);
     }
     /**
      * Returns the global configuration object that was previously set
@@ -28,4 +135,236 @@ public class AbstractMainAppFrame extends JFrame {
     public AppConfig getConfig() {
         return configuration;
     }
-}
\ No newline at end of file
+    /**
+     * Sets the desktop in which the child frames are displayed.
+     * @param desktop The desktop pane of this frame, or {@code null} if frames are
+     * placed by {@link #displayFrame(core.gui.AbstractInternalFrame) displayFrame}
+     */
+    public void setDesktop(JDesktopPane desktop) {
+        this.desktop = desktop;
+    }
+    /**
+     * Returns the desktop in which the child frames are displayed.
+     * @return the desktop pane, or {@code null} if none was set
+     */
+    public JDesktopPane getDesktop() {
+        return desktop;
+    }
+    /**
+     * Registers a child frame. The frame is not created until it's opened for the first time.
+     * Registering a name again replaces its factory, without affecting a frame already loaded.
+     * @param name Name used to open the frame
+     * @param factory Factory that creates the frame
+     */
+    public void registerFrame(String name, IInternalFrameFactory factory) {
+        Objects.requireNonNull(name, "Frame name can't be null");
+        Objects.requireNonNull(factory, "Frame factory can't be null");
+        factories.put(name, factory);
+    }
+    /**
+     * Opens a registered frame: creates it if it's not loaded, runs its
+     * {@link AbstractInternalFrame#prepareForDisplay() prepareForDisplay()}, displays it and
+     * starts {@link AbstractInternalFrame#loadSections() loading its sections} in the background.
+     * @param name Name of the frame
+     * @return The displayed frame
+     * @throws IllegalArgumentException When no frame was registered with that name
+     */
+    public AbstractInternalFrame openFrame(String name) {
+        LoadedFrame loaded = loadedFrames.get(name);
+        if (loaded == null) {
+            IInternalFrameFactory factory = factories.get(name);
+            if (factory == null)
+                throw new IllegalArgumentException(String.format("No frame registered as \"%s\"", name));
+            loaded = load(name, factory.createFrame(this));
+        }
+        loaded.closedAt = 0;
+        loaded.frame.prepareForDisplay();
+        displayFrame(loaded.frame);
+        loaded.frame.loadSections();
+        return loaded.frame;
+    }
+    /**
+     * Returns a registered frame if it's currently loaded, without creating it.
+     * @param name Name of the frame
+     * @return The frame, or {@code null} if it was never opened or has been evicted
+     */
+    public AbstractInternalFrame getFrame(String name) {
+        LoadedFrame loaded = loadedFrames.get(name);
+        return loaded == null ? null : loaded.frame;
+    }
+    /**
+     * Returns the number of registered frames currently loaded, whether open or closed.
+     * @return the number of loaded frames
+     */
+    public int getLoadedFrameCount() {
+        return loadedFrames.size();
+    }
+    /**
+     * Returns the number of frames evicted so far.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions;
+    }
+    /**
+     * Sets the budget of closed frames. Whenever a limit is exceeded, the closed frames
+     * used least recently are evicted until the budget is met again.
+     * @param maxRetainedFrames Maximum number of closed frames kept in memory, {@code 0}
+     * to evict frames as soon as they're closed
+     * @param maxRetainedRows Maximum number of rows held by the closed frames kept in memory,
+     * as reported by {@link AbstractInternalFrame#getLoadedRowCount() getLoadedRowCount()},
+     * {@code 0} for no limit
+     * @param idleTimeout Time after which a closed frame is evicted, {@code 0} for no limit
+     * @param unit Unit of {@code idleTimeout}
+     */
+    public void setFrameBudget(int maxRetainedFrames, long maxRetainedRows, long idleTimeout, TimeUnit unit) {
+        if (maxRetainedFrames < 0 || maxRetainedRows < 0 || idleTimeout < 0)
+            throw new IllegalArgumentException("Frame budget can't be negative");
+        this.maxRetainedFrames = maxRetainedFrames;
+        this.maxRetainedRows = maxRetainedRows;
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        if (idleTimeoutMillis > 0) {
+            idleTimer.setDelay((int) Math.max(1000, Math.min(idleTimeoutMillis / 2, 60000)));
+            idleTimer.restart();
+        } else {
+            idleTimer.stop();
+        }
+        enforceFrameBudget();
+    }
+    /**
+     * Evicts a registered frame if it's loaded and closed.
+     * @param name Name of the frame
+     * @return {@code true} if the frame was evicted
+     */
+    public boolean evictFrame(String name) {
+        LoadedFrame loaded = loadedFrames.get(name);
+        if (loaded == null || loaded.frame.isVisible())
+            return false;
+        evict(loaded);
+        return true;
+    }
+    /**
+     * Evicts every closed frame, regardless of the budget. Useful when the application
+     * runs short of memory.
+     */
+    public void evictClosedFrames() {
+        for (LoadedFrame loaded : new ArrayList<>(loadedFrames.values())) {
+            if (!loaded.frame.isVisible())
+                evict(loaded);
+        }
+    }
+    /**
+     * Stops watching the idle frames, besides disposing this frame.
+     */
+    @Override
+    public void dispose() {
+        idleTimer.stop();
+        super.dispose();
+    }
+    /**
+     * Displays a prepared frame. By default, the frame is added to the desktop if it's not
+     * placed yet, shown and selected. Subclasses that lay out frames differently can override it.
+     * @param frame Frame to display
+     */
+    protected void displayFrame(AbstractInternalFrame frame) {
+        if (desktop != null && frame.getParent() == null)
+            desktop.add(frame);
+        frame.setVisible(true);
+        frame.toFront();
+        try {
+            frame.setSelected(true);
+        } catch (PropertyVetoException ex) {
+            LOGGER.debug("Frame refused to be selected", ex);
+        }
+    }
+
+    private LoadedFrame load(String name, AbstractInternalFrame frame) {
+        final LoadedFrame loaded = new LoadedFrame(name, frame);
+        if (frame.getDefaultCloseOperation() == WindowConstants.DISPOSE_ON_CLOSE)
+            frame.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+        frame.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent evt) {
+                if (loadedFrames.get(loaded.name) != loaded)
+                    return;
+                loaded.closedAt = System.currentTimeMillis();
+                enforceFrameBudget();
+            }
+        });
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent evt) {
+                if (loadedFrames.get(loaded.name) == loaded)
+                    evict(loaded);
+            }
+        });
+        loadedFrames.put(name, loaded);
+        FRAMES.put(name, frame);
+        return loaded;
+    }
+    /**
+     * Evicts the closed frames that exceed the budget, least recently used first.
+     */
+    private void enforceFrameBudget() {
+        long now = System.currentTimeMillis();
+        List<LoadedFrame> closed = new ArrayList<>();
+        long rows = 0;
+        for (LoadedFrame loaded : loadedFrames.values()) {
+            if (loaded.frame.isVisible())
+                continue;
+            if (loaded.closedAt == 0)
+                loaded.closedAt = now;
+            closed.add(loaded);
+            if (maxRetainedRows > 0)
+                rows += loaded.frame.getLoadedRowCount();
+        }
+        Iterator<LoadedFrame> eldest = closed.iterator();
+        int retained = closed.size();
+        while (eldest.hasNext()) {
+            LoadedFrame loaded = eldest.next();
+            boolean idle = idleTimeoutMillis > 0 && now - loaded.closedAt >= idleTimeoutMillis;
+            if (!idle && retained <= maxRetainedFrames && (maxRetainedRows == 0 || rows <= maxRetainedRows))
+                continue;
+            if (maxRetainedRows > 0)
+                rows -= loaded.frame.getLoadedRowCount();
+            retained--;
+            evict(loaded);
+        }
+    }
+    /**
+     * Forgets the frame, releases its data and disposes it. Listeners of the frame ignore
+     * the events fired meanwhile, since it's no longer loaded.
+     */
+    private void evict(LoadedFrame loaded) {
+        loadedFrames.remove(loaded.name);
+        if (FRAMES.get(loaded.name) == loaded.frame)
+            FRAMES.remove(loaded.name);
+        evictions++;
+        try {
+            loaded.frame.releaseResources();
+        } catch (RuntimeException ex) {
+            LOGGER.warn(String.format("Frame \"%s\" failed to release its resources", loaded.name), ex);
+        }
+        loaded.frame.dispose();
+        Container parent = loaded.frame.getParent();
+        if (parent != null) {
+            parent.remove(loaded.frame);
+            parent.repaint();
+        }
+        LOGGER.debug(String.format("Frame \"%s\" evicted", loaded.name));
+    }
+    /**
+     * Registered frame currently in memory.
+     */
+    private static class LoadedFrame {
+
+        private final String name;
+        private final AbstractInternalFrame frame;
+        private long closedAt;
+
+        LoadedFrame(String name, AbstractInternalFrame frame) {
+            this.name = name;
+            this.frame = frame;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package core.gui;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency figures of a single kind of user action, accumulated since the application
+ * started. The <i>latency</i> of an action is the time since the user triggered it until
+ * its result is displayed, and includes the <i>execution</i> time, the part spent doing
+ * the actual work. Instances are updated concurrently and can be read from any thread.
+ * @author Rene Vera Apale
+ */
+public class ActionStatistics {
+
+    private long count;
+    private long failures;
+    private long cancellations;
+    private long totalLatency;
+    private long maxLatency;
+    private long totalExecution;
+    /**
+     * Records the outcome of an action.
+     * @param latencyNanos Time since the action was triggered until it finished, in nanoseconds
+     * @param executionNanos Time spent executing the action, in nanoseconds
+     * @param failed {@code true} if the action ended with an error
+     */
+    public synchronized void record(long latencyNanos, long executionNanos, boolean failed) {
+        count++;
+        if (failed)
+            failures++;
+        totalLatency += latencyNanos;
+        totalExecution += executionNanos;
+        maxLatency = Math.max(maxLatency, latencyNanos);
+    }
+    /**
+     * Records an action cancelled by the user before it finished.
+     */
+    public synchronized void recordCancellation() {
+        cancellations++;
+    }
+    /**
+     * Returns the number of actions that finished, successfully or not.
+     * @return the number of finished actions
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+    /**
+     * Returns the number of actions that ended with an error.
+     * @return the number of failed actions
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+    /**
+     * Returns the number of actions cancelled by the user.
+     * @return the number of cancelled actions
+     */
+    public synchronized long getCancellations() {
+        return cancellations;
+    }
+    /**
+     * Returns the average latency of the finished actions.
+     * @return the average latency in milliseconds, or {@code 0} if no action finished yet
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return count == 0 ? 0 : (double) totalLatency / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    /**
+     * Returns the highest latency of the finished actions.
+     * @return the highest latency in milliseconds
+     */
+    public synchronized double getMaxLatencyMillis() {
+        return (double) maxLatency / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    /**
+     * Returns the average execution time of the finished actions.
+     * @return the average execution time in milliseconds, or {@code 0} if no action finished yet
+     */
+    public synchronized double getAverageExecutionMillis() {
+        return count == 0 ? 0 : (double) totalExecution / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("count=%d, failures=%d, cancellations=%d, avgLatency=%.1fms, maxLatency=%.1fms, avgExecution=%.1fms",
+                count, failures, cancellations, getAverageLatencyMillis(), getMaxLatencyMillis(), getAverageExecutionMillis());
+    }
+}
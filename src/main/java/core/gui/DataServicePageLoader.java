@@ -0,0 +1,101 @@
+package core.gui;
+
+import core.data.access.utils.QueryFilter;
+import core.data.service.IExtendedDataService;
+import core.data.session.AbstractDataSession;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link PagedRichDataModel.PageLoader} that fetches its pages from a data service,
+ * always with the same restrictions, to which the ones of the model are added, and the
+ * same ordering, unless the model sorts the rows. Pages reached by scrolling forward
+ * are fetched with {@link IExtendedDataService#getRecordsAfter(java.util.List, java.lang.String, boolean, java.lang.Object, int)
+ * getRecordsAfter}, so deep pages cost the same as the first one; pages reached by
+ * jumping are fetched by offset.
+ * @author Rene Vera Apale
+ * @param <T> Type of the rows
+ */
+public class DataServicePageLoader<T> implements PagedRichDataModel.PageLoader<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+
+    private final IExtendedDataService<T> service;
+    private final AbstractDataSession dataSession;
+    private final List<QueryFilter> filters;
+    private final String orderBy;
+    private final boolean ascending;
+    /**
+     * Initializes the loader with the restrictions and ordering of the search.
+     * @param service Service from which the records are fetched
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     */
+    public DataServicePageLoader(IExtendedDataService<T> service, List<QueryFilter> filters, String orderBy, boolean ascending) {
+        this(service, null, filters, orderBy, ascending);
+    }
+    /**
+     * Initializes the loader with the restrictions and ordering of the search, releasing
+     * the session of the calling thread after every call to the service, since the model
+     * calls the loader on pooled threads. Sessions with an active transaction are kept.
+     * @param service Service from which the records are fetched
+     * @param dataSession Data session used by {@code service}, or {@code null} if there's no
+     * session to release
+     * @param filters List of {@link QueryFilter} objects that represent the restrictions for the search
+     * @param orderBy Name of the property to order the results over, pass {@code null} to order
+     * only by ID
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     */
+    public DataServicePageLoader(IExtendedDataService<T> service, AbstractDataSession dataSession, List<QueryFilter> filters, String orderBy, boolean ascending) {
+        this.service = service;
+        this.dataSession = dataSession;
+        this.filters = filters;
+        this.orderBy = orderBy;
+        this.ascending = ascending;
+    }
+
+    @Override
+    public int countRows(List<QueryFilter> modelFilters) throws Exception {
+        try {
+            return service.getRecordsCount(combine(modelFilters));
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public List<T> loadPage(List<QueryFilter> modelFilters, String modelOrderBy, boolean modelAscending, int offset, int limit, T previous) throws Exception {
+        List<QueryFilter> search = combine(modelFilters);
+        String property = modelOrderBy == null ? orderBy : modelOrderBy;
+        boolean order = modelOrderBy == null ? ascending : modelAscending;
+        try {
+            if (previous != null)
+                return service.getRecordsAfter(search, property, order, previous, limit);
+            return service.getRecordsPage(search, property, order, offset, limit);
+        } finally {
+            release();
+        }
+    }
+
+    private List<QueryFilter> combine(List<QueryFilter> modelFilters) {
+        if (modelFilters == null || modelFilters.isEmpty())
+            return filters;
+        List<QueryFilter> combined = filters == null ? new ArrayList<QueryFilter>() : new ArrayList<>(filters);
+        combined.addAll(modelFilters);
+        return combined;
+    }
+
+    private void release() {
+        if (dataSession == null || dataSession.isTransactionActive())
+            return;
+        try {
+            dataSession.releaseCurrentSession();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Session of a page load could not be released", ex);
+        }
+    }
+}
@@ -1,6 +1,19 @@
 package core.gui;
 
+import core.data.session.AbstractDataSession;
+import java.awt.Cursor;
 import java.awt.Dimension;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -9,12 +22,33 @@ import org.apache.logging.log4j.Logger;
  * It provides six buttons: one for every CRUD operation, one <i>Cancel</i> button
  * and one <i>Edit</i> button. This buttons can be enabled/disable in different
  * combinations (states) to allow a different set of actions for the user to perform.
+ * <p>When the frame implements {@link IAsyncCrudFrame}, the Search, Save and Delete actions
+ * run on a small worker pool shared by every bar, so a slow query doesn't freeze the
+ * application. While such an action runs the bar is <i>busy</i>: every button but Cancel
+ * is disabled and further actions are ignored. A running search can be cancelled, which
+ * discards its result; a running save or delete can't, since its changes may be committed
+ * anyway, so Cancel stays disabled until it finishes. The latency of every action is recorded in an {@link ActionStatistics}
+ * instance per {@link Action}.</p>
+ * <p>Frames whose background actions go through an {@link AbstractDataSession} should
+ * {@link #setDataSession(core.data.session.AbstractDataSession) give the bar} that session,
+ * so the session a worker thread opened is released after every action instead of being
+ * left bound to the pooled thread.</p>
  * @author Rene Vera Apale
  */
 public class EditionBar extends javax.swing.JPanel {
     
+    private static final int WORKER_THREADS = 4;
+    private static final int WORKER_QUEUE_CAPACITY = 16;
+    private static final ThreadPoolExecutor WORKERS = createWorkers();
+    private static final Map<Action, ActionStatistics> STATISTICS = createStatistics();
+
     private ICrudFrame crudFrame;
+    private AbstractDataSession dataSession;
     private EditionBar.State state;
+    private boolean busy;
+    private Future<?> pendingTask;
+    private Action pendingAction;
+    private long actionSequence;
     
     private final Logger LOGGER = LogManager.getLogger("appLogger");
     /**
@@ -37,9 +71,16 @@ public class EditionBar extends javax.swing.JPanel {
      * <li>{@link State#ROW_SELECTED State.ROW_SELECTED} enables Search, Create, Edit, and Delete;
      * the rest become disabled</li>
      * <li>{@link State#STAND_BY State.STAND_BY} enables Search, and Create; the rest become disabled</li></ul>
+     * <p>While the bar is busy the state is remembered and applied once the running
+     * action finishes.</p>
      * @param state 
      */
     public void activateState(EditionBar.State state) {
+        this.state = state;
+        applyState();
+    }
+
+    private void applyState() {
         btnSearch.setEnabled(false);
         btnCreate.setEnabled(false);
         btnEdit.setEnabled(false);
@@ -53,6 +94,17 @@ public class EditionBar extends javax.swing.JPanel {
         btnSave.setEnabled(true);
         btnDelete.setEnabled(true);
         btnCancel.setEnabled(true);
+        if (busy) {
+            btnSearch.setEnabled(false);
+            btnCreate.setEnabled(false);
+            btnEdit.setEnabled(false);
+            btnSave.setEnabled(false);
+            btnDelete.setEnabled(false);
+            btnCancel.setEnabled(pendingAction != null && pendingAction.cancellable);
+            return;
+        }
+        if (state == null)
+            return;
         switch (state) {
             case EDITING:
                 btnSearch.setEnabled(false);
@@ -69,7 +121,6 @@ public class EditionBar extends javax.swing.JPanel {
                 btnSave.setEnabled(false);
                 btnCancel.setEnabled(false);
         }
-        this.state = state;
     }
     /**
      * Returns the current state of the edition bar.
@@ -85,6 +136,233 @@ public class EditionBar extends javax.swing.JPanel {
     public void setCrudFrame(ICrudFrame frame) {
         crudFrame = frame;
     }
+    /**
+     * Sets the session used by the background actions of the frame, whose current session
+     * is released on the worker thread after every action, rolling back any transaction
+     * left active.
+     * @param dataSession Session used by {@link IAsyncCrudFrame#performInBackground(core.gui.EditionBar.Action, java.lang.Object)
+     * performInBackground}, or {@code null} if there's no session to release
+     */
+    public void setDataSession(AbstractDataSession dataSession) {
+        this.dataSession = dataSession;
+    }
+    /**
+     * Indicates whether an action is running in the background.
+     * @return {@code true} if the bar is waiting for an action to finish
+     */
+    public boolean isBusy() {
+        return busy;
+    }
+    /**
+     * Cancels the search running in the background, if any: its result is discarded and
+     * the bar leaves the busy state right away. The search isn't interrupted, it's left to
+     * finish on its worker thread. Saves and deletes can't be cancelled, since they may
+     * commit their changes anyway; the bar stays busy until they finish.
+     * @return {@code true} if a search was cancelled
+     */
+    public boolean cancelPendingAction() {
+        if (pendingTask == null)
+            return false;
+        if (!pendingAction.cancellable) {
+            LOGGER.debug(String.format("%s can't be cancelled, waiting for it to finish", pendingAction));
+            return false;
+        }
+        pendingTask.cancel(false);
+        STATISTICS.get(pendingAction).recordCancellation();
+        LOGGER.debug(String.format("%s cancelled", pendingAction));
+        pendingTask = null;
+        pendingAction = null;
+        actionSequence++;
+        leaveBusyState();
+        return true;
+    }
+    /**
+     * Returns the latency figures of the specified action, accumulated over every bar
+     * of the application.
+     * @param action The action
+     * @return the statistics of the action
+     */
+    public static ActionStatistics getStatistics(Action action) {
+        return STATISTICS.get(action);
+    }
+
+    private static ThreadPoolExecutor createWorkers() {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(WORKER_QUEUE_CAPACITY), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "EditionBar-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    private static Map<Action, ActionStatistics> createStatistics() {
+        Map<Action, ActionStatistics> statistics = new EnumMap<>(Action.class);
+        for (Action action : Action.values())
+            statistics.put(action, new ActionStatistics());
+        return Collections.unmodifiableMap(statistics);
+    }
+    /**
+     * Executes an action triggered by the user, in the background if the frame supports
+     * it and on the Event Dispatch Thread otherwise. Ignored while another action runs.
+     */
+    private void execute(Action action, String errorTitle) {
+        if (busy) {
+            LOGGER.debug(String.format("%s ignored, another action is still running", action));
+            return;
+        }
+        if (action.background && crudFrame instanceof IAsyncCrudFrame)
+            submit(action, errorTitle);
+        else
+            executeNow(action, errorTitle);
+    }
+
+    private void executeNow(Action action, String errorTitle) {
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            switch (action) {
+                case SEARCH:
+                    crudFrame.findRecords();
+                    break;
+                case CREATE:
+                    crudFrame.prepareEdition(null);
+                    break;
+                case EDIT:
+                    crudFrame.prepareEdition(crudFrame.getDataForProcessing());
+                    break;
+                case SAVE:
+                    crudFrame.saveChanges(crudFrame.getDataForProcessing());
+                    break;
+                case DELETE:
+                    crudFrame.delete(crudFrame.getDataForProcessing());
+                    break;
+                case CANCEL:
+                    crudFrame.cancelAction();
+            }
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        long elapsed = System.nanoTime() - start;
+        finish(action, elapsed, elapsed, failure, errorTitle);
+    }
+    /**
+     * Gathers the record on the Event Dispatch Thread and hands the action over to the
+     * workers, entering the busy state until it completes.
+     */
+    private void submit(final Action action, final String errorTitle) {
+        final long start = System.nanoTime();
+        final IAsyncCrudFrame<Object> frame = getAsyncFrame();
+        final AbstractDataSession session = dataSession;
+        final Object record;
+        try {
+            record = action == Action.SEARCH ? null : frame.getDataForProcessing();
+        } catch (Exception ex) {
+            long elapsed = System.nanoTime() - start;
+            finish(action, elapsed, elapsed, ex, errorTitle);
+            return;
+        }
+        final long sequence = ++actionSequence;
+        try {
+            pendingTask = WORKERS.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long executionStart = System.nanoTime();
+                    Object result = null;
+                    Exception failure = null;
+                    try {
+                        result = frame.performInBackground(action, record);
+                    } catch (Exception ex) {
+                        failure = ex;
+                    } finally {
+                        releaseSession(session, action);
+                    }
+                    final long execution = System.nanoTime() - executionStart;
+                    final Object actionResult = result;
+                    final Exception actionFailure = failure;
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            complete(sequence, action, record, actionResult, actionFailure, start, execution, errorTitle);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            LOGGER.warn(String.format("%s rejected, too many actions are running", action));
+            MessageDialog.showMessage(this, MessageDialog.Type.WARN, errorTitle,
+                    "Hay demasiadas operaciones en curso, intente nuevamente en unos momentos");
+            return;
+        }
+        pendingAction = action;
+        busy = true;
+        applyState();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+    }
+
+    private void complete(long sequence, Action action, Object record, Object result, Exception failure,
+            long start, long execution, String errorTitle) {
+        if (sequence != actionSequence)
+            return;
+        pendingTask = null;
+        pendingAction = null;
+        leaveBusyState();
+        if (failure == null) {
+            try {
+                getAsyncFrame().displayResult(action, record, result);
+            } catch (Exception ex) {
+                failure = ex;
+            }
+        }
+        finish(action, System.nanoTime() - start, execution, failure, errorTitle);
+    }
+
+    /**
+     * Returns the frame as an {@link IAsyncCrudFrame}. The records passed to it are always
+     * the ones returned by its own {@link ICrudFrame#getDataForProcessing() getDataForProcessing}.
+     */
+    @SuppressWarnings("unchecked")
+    private IAsyncCrudFrame<Object> getAsyncFrame() {
+        return (IAsyncCrudFrame<Object>) crudFrame;
+    }
+    /**
+     * Releases the session bound to the worker thread by an action, if the bar was given
+     * a data session. Runs on the worker thread after every action.
+     */
+    private void releaseSession(AbstractDataSession session, Action action) {
+        if (session == null)
+            return;
+        try {
+            session.releaseCurrentSession();
+        } catch (RuntimeException ex) {
+            LOGGER.warn(String.format("Session of %s could not be released", action), ex);
+        }
+    }
+
+    private void leaveBusyState() {
+        busy = false;
+        applyState();
+        setCursor(null);
+    }
+    /**
+     * Records the latency of the action and shows its error, if any.
+     */
+    private void finish(Action action, long latency, long execution, Exception failure, String errorTitle) {
+        STATISTICS.get(action).record(latency, execution, failure != null);
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug(String.format("%s finished in %d ms (%d ms executing)", action,
+                    TimeUnit.NANOSECONDS.toMillis(latency), TimeUnit.NANOSECONDS.toMillis(execution)));
+        if (failure != null) {
+            LOGGER.error(failure);
+            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, errorTitle, failure.getMessage(), failure);
+        }
+    }
 
     /**
      * This method is called from within the constructor to initialize the form.
@@ -157,60 +435,31 @@ public class EditionBar extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void btnSearchActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnSearchActionPerformed
-        try {
-            crudFrame.findRecords();
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al realizar la búsqueda", ex.getMessage(), ex);
-        }
+        execute(Action.SEARCH, "Error al realizar la búsqueda");
     }//GEN-LAST:event_btnSearchActionPerformed
 
     private void btnCreateActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCreateActionPerformed
-        try {
-            crudFrame.prepareEdition(null);
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al preparar un nuevo registro", ex.getMessage(), ex);
-        }
+        execute(Action.CREATE, "Error al preparar un nuevo registro");
     }//GEN-LAST:event_btnCreateActionPerformed
 
     private void btnEditActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnEditActionPerformed
-        try {
-            Object data = crudFrame.getDataForProcessing();
-            crudFrame.prepareEdition(data);
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al preparar la edición", ex.getMessage(), ex);
-        }
+        execute(Action.EDIT, "Error al preparar la edición");
     }//GEN-LAST:event_btnEditActionPerformed
 
     private void btnSaveActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnSaveActionPerformed
-        try {
-            Object data = crudFrame.getDataForProcessing();
-            crudFrame.saveChanges(data);
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al guardar los cambios", ex.getMessage(), ex);
-        }
+        execute(Action.SAVE, "Error al guardar los cambios");
     }//GEN-LAST:event_btnSaveActionPerformed
 
     private void btnDeleteActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnDeleteActionPerformed
-        try {
-            Object data = crudFrame.getDataForProcessing();
-            crudFrame.delete(data);
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al eliminar el registro", ex.getMessage(), ex);
-        }
+        execute(Action.DELETE, "Error al eliminar el registro");
     }//GEN-LAST:event_btnDeleteActionPerformed
 
     private void btnCancelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCancelActionPerformed
-        try {
-            crudFrame.cancelAction();
-        } catch(Exception ex) {
-            LOGGER.error(ex);
-            MessageDialog.showMessage(null, MessageDialog.Type.ERROR, "Error al cancelar la acción", ex.getMessage(), ex);
+        if (busy) {
+            cancelPendingAction();
+            return;
         }
+        execute(Action.CANCEL, "Error al cancelar la acción");
     }//GEN-LAST:event_btnCancelActionPerformed
 
 
@@ -243,5 +492,43 @@ public class EditionBar extends javax.swing.JPanel {
          */
         ROW_SELECTED
     }
+    /**
+     * Actions triggered by the buttons of the bar.
+     */
+    public static enum Action {
+        /**
+         * Search button. Runs in the background for an {@link IAsyncCrudFrame}, and can be
+         * cancelled meanwhile.
+         */
+        SEARCH(true, true),
+        /**
+         * Create button.
+         */
+        CREATE(false, false),
+        /**
+         * Edit button.
+         */
+        EDIT(false, false),
+        /**
+         * Save button. Runs in the background for an {@link IAsyncCrudFrame}.
+         */
+        SAVE(true, false),
+        /**
+         * Delete button. Runs in the background for an {@link IAsyncCrudFrame}.
+         */
+        DELETE(true, false),
+        /**
+         * Cancel button.
+         */
+        CANCEL(false, false);
+
+        private final boolean background;
+        private final boolean cancellable;
+
+        private Action(boolean background, boolean cancellable) {
+            this.background = background;
+            this.cancellable = cancellable;
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package core.gui;
+
+/**
+ * CRUD frame whose Search, Save and Delete actions are split in two parts, so the
+ * {@link EditionBar} can run the slow one away from the Event Dispatch Thread: the work
+ * against the database runs on a worker thread, and only the update of the components
+ * runs on the Event Dispatch Thread. Frames that don't implement this interface keep
+ * having every action executed on the Event Dispatch Thread.
+ * <p>For these actions the bar calls {@link #performInBackground(core.gui.EditionBar.Action, java.lang.Object)
+ * performInBackground} and {@link #displayResult(core.gui.EditionBar.Action, java.lang.Object, java.lang.Object)
+ * displayResult} instead of {@link #findRecords() findRecords}, {@link #saveChanges(java.lang.Object) saveChanges}
+ * and {@link #delete(java.lang.Object) delete}.</p>
+ * @author Rene Vera Apale
+ * @param <T> Type of the entities that will be managed by this frame
+ */
+public interface IAsyncCrudFrame<T> extends ICrudFrame<T> {
+
+    /**
+     * Performs the data access part of an action. Runs on a worker thread, so it must not
+     * read or modify any component; everything it needs from them is the record, which
+     * is gathered on the Event Dispatch Thread beforehand. A search cancelled by the user
+     * isn't interrupted, it runs to completion and its result is discarded; saves and
+     * deletes can't be cancelled.
+     * @param action {@link EditionBar.Action#SEARCH SEARCH}, {@link EditionBar.Action#SAVE SAVE}
+     * or {@link EditionBar.Action#DELETE DELETE}
+     * @param record Object returned by {@link #getDataForProcessing() getDataForProcessing},
+     * or {@code null} for a search
+     * @return Result of the action, passed on to {@link #displayResult(core.gui.EditionBar.Action, java.lang.Object, java.lang.Object)
+     * displayResult}
+     * @throws Exception When the action fails; the error is shown to the user
+     */
+    public Object performInBackground(EditionBar.Action action, T record) throws Exception;
+    /**
+     * Updates the components with the result of an action. Runs on the Event Dispatch
+     * Thread, and only if the action completed and wasn't cancelled.
+     * @param action The action that completed
+     * @param record The record the action was performed on, or {@code null} for a search
+     * @param result Value returned by {@link #performInBackground(core.gui.EditionBar.Action, java.lang.Object)
+     * performInBackground}
+     * @throws Exception When the result can't be displayed; the error is shown to the user
+     */
+    public void displayResult(EditionBar.Action action, T record, Object result) throws Exception;
+}
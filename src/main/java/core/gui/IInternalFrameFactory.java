@@ -0,0 +1,16 @@
+package core.gui;
+
+/**
+ * Creates the instances of an internal frame registered in an {@link AbstractMainAppFrame},
+ * which calls it the first time the frame is opened, and again after the frame was evicted.
+ * @author Rene Vera Apale
+ */
+public interface IInternalFrameFactory {
+
+    /**
+     * Creates a new instance of the frame. Called on the Event Dispatch Thread.
+     * @param mainFrame The main container of the application
+     * @return A new frame, not displayed yet
+     */
+    public AbstractInternalFrame createFrame(AbstractMainAppFrame mainFrame);
+}
@@ -0,0 +1,467 @@
+package core.gui;
+
+import core.data.access.utils.QueryFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Table model that doesn't hold the whole result of a search in memory. It only knows
+ * the total number of rows, and fetches fixed-size pages through a {@link PageLoader}
+ * as the table requests the rows to paint. At most a configured number of pages is kept,
+ * the least recently used being discarded first, so memory stays constant no matter how
+ * many rows the search matched.
+ * <p>Pages are fetched on a background executor, never on the Event Dispatch Thread:
+ * until its page arrives, a row is displayed as a placeholder, {@code null}, and the
+ * table is told to repaint the rows of every page as soon as it's loaded. The model must
+ * only be used from the Event Dispatch Thread.</p>
+ * <p>Since the data is owned by the underlying source, filters, sorts and searches are
+ * delegated to the loader, which re-queries the source, and the mutation methods inherited
+ * from {@link RichDataModel} only make the model reload its rows, which are expected to
+ * be written to the source already.</p>
+ * @author Rene Vera Apale
+ * @param <T> Type of the data that will be displayed by this model
+ */
+public class PagedRichDataModel<T> extends RichDataModel<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger("appLogger");
+    private static final int LOADER_THREADS = 2;
+    private static final ThreadPoolExecutor LOADERS = createLoaders();
+
+    private final PageLoader<T> loader;
+    private final int pageSize;
+    private final Executor executor;
+    private final LinkedHashMap<Integer, List<T>> pages;
+    private final Set<Integer> pendingPages;
+    private long generation;
+    private int rowCount;
+    private List<QueryFilter> filters;
+    private int sortColumn = -1;
+    private boolean sortAscending;
+    /**
+     * Initializes a model that fetches pages of 100 rows and keeps up to 10 of them in memory.
+     * @param loader Source from which the pages will be fetched
+     */
+    public PagedRichDataModel(PageLoader<T> loader) {
+        this(loader, 100, 10);
+    }
+    /**
+     * Initializes a model with the specified page size and page window, that fetches its
+     * pages on a pool of daemon threads shared by every paged model.
+     * @param loader Source from which the pages will be fetched
+     * @param pageSize Number of rows fetched in a single call to the loader
+     * @param maxPages Maximum number of pages held in memory at any time
+     */
+    public PagedRichDataModel(PageLoader<T> loader, int pageSize, int maxPages) {
+        this(loader, pageSize, maxPages, LOADERS);
+    }
+    /**
+     * Initializes a model with the specified page size and page window.
+     * @param loader Source from which the pages will be fetched
+     * @param pageSize Number of rows fetched in a single call to the loader
+     * @param maxPages Maximum number of pages held in memory at any time
+     * @param executor Executor on which the loader is called
+     */
+    public PagedRichDataModel(PageLoader<T> loader, int pageSize, final int maxPages, Executor executor) {
+        if (pageSize < 1 || maxPages < 1)
+            throw new IllegalArgumentException("Page size and page window must be greater than zero");
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.executor = executor;
+        this.pendingPages = new HashSet<>();
+        this.pages = new LinkedHashMap<Integer, List<T>>(maxPages + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+    /**
+     * Discards every loaded page and asks the loader for the current number of rows, on
+     * the calling thread. Must be called once before displaying the model, unless
+     * {@link #reload() reload} is called instead.
+     * @throws Exception When the loader fails to count the rows
+     */
+    public void refresh() throws Exception {
+        discardPages();
+        rowCount = loader.countRows(filters);
+        fireTableDataChanged();
+    }
+    /**
+     * Discards every loaded page and asks the loader for the current number of rows in
+     * the background. The rows displayed meanwhile are placeholders; the table is told
+     * that all of its data changed once the count arrives. Can be called from any thread.
+     */
+    public void reload() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    reload();
+                }
+            });
+            return;
+        }
+        discardPages();
+        fireTableDataChanged();
+        final long requested = generation;
+        final List<QueryFilter> requestFilters = filters;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Integer count = null;
+                try {
+                    count = loader.countRows(requestFilters);
+                } catch (Exception ex) {
+                    LOGGER.error("Rows of a paged model could not be counted", ex);
+                }
+                final Integer counted = count;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (counted == null || requested != generation)
+                            return;
+                        rowCount = counted;
+                        fireTableDataChanged();
+                    }
+                });
+            }
+        });
+    }
+    /**
+     * Returns the number of rows fetched in a single call to the loader.
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    /**
+     * Returns the data object pointed by the specified index. When its page isn't
+     * currently loaded, the page is requested to the loader in the background and a
+     * placeholder is returned.
+     * @param index Position of the object within the whole result
+     * @return The object represented by the specified index, or {@code null} while its
+     * page is being loaded or if the source holds less rows than it reported
+     */
+    @Override
+    public T getRow(int index) {
+        if (index < 0 || index >= rowCount)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rowCount);
+        int pageIdx = index / pageSize;
+        List<T> page = pages.get(pageIdx);
+        if (page == null) {
+            requestPage(pageIdx);
+            return null;
+        }
+        int offset = index % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+    /**
+     * Indicates whether the page holding the specified row is loaded, so the row
+     * returned by {@link #getRow(int) getRow} isn't a placeholder.
+     * @param index Position of the row within the whole result
+     * @return {@code true} if the row is loaded
+     */
+    public boolean isRowLoaded(int index) {
+        return pages.containsKey(index / pageSize);
+    }
+
+    private void requestPage(final int pageIdx) {
+        if (!pendingPages.add(pageIdx))
+            return;
+        T previous = null;
+        List<T> previousPage = pageIdx > 0 ? pages.get(pageIdx - 1) : null;
+        if (previousPage != null && previousPage.size() == pageSize)
+            previous = previousPage.get(pageSize - 1);
+        final T last = previous;
+        final long requested = generation;
+        final List<QueryFilter> requestFilters = filters;
+        final String orderBy = getOrderProperty();
+        final boolean ascending = sortAscending;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> page = null;
+                try {
+                    page = loader.loadPage(requestFilters, orderBy, ascending, pageIdx * pageSize, pageSize, last);
+                } catch (Exception ex) {
+                    LOGGER.error(String.format("Page %d could not be loaded", pageIdx), ex);
+                }
+                final List<T> loaded = page;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        pageLoaded(requested, pageIdx, loaded);
+                    }
+                });
+            }
+        });
+    }
+    /**
+     * Keeps a loaded page and repaints its rows, unless the model was reloaded meanwhile.
+     * A failed page is requested again the next time one of its rows is painted.
+     */
+    private void pageLoaded(long requested, int pageIdx, List<T> page) {
+        if (requested != generation)
+            return;
+        pendingPages.remove(pageIdx);
+        if (page == null)
+            return;
+        pages.put(pageIdx, page);
+        int first = pageIdx * pageSize;
+        if (first < rowCount)
+            fireTableRowsUpdated(first, Math.min(first + pageSize, rowCount) - 1);
+    }
+    /**
+     * Discards the loaded pages, and the ones being loaded when they arrive.
+     */
+    private void discardPages() {
+        generation++;
+        pages.clear();
+        pendingPages.clear();
+    }
+
+    private String getOrderProperty() {
+        return sortColumn < 0 ? null : getColumnProperties().get(sortColumn);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+    /**
+     * Reloads the rows from the loader, since the data of a paged model is owned by it;
+     * the rows of the list are not displayed. Meant to be called after the source changed.
+     * @param newData ignored
+     */
+    @Override
+    public void setData(List<T> newData) {
+        reload();
+    }
+    /**
+     * Discards every loaded page and leaves the model empty until the next
+     * {@link #refresh() refresh()} or {@link #reload() reload()}.
+     */
+    @Override
+    public void clearData() {
+        discardPages();
+        rowCount = 0;
+        fireTableDataChanged();
+    }
+    /**
+     * Discards every loaded page, like {@link #clearData() clearData}.
+     */
+    @Override
+    public void releaseData() {
+        clearData();
+    }
+    /**
+     * Returns the number of rows of the pages currently loaded.
+     * @return the number of rows held
+     */
+    @Override
+    public int getLoadedRowCount() {
+        int loaded = 0;
+        for (List<T> page : pages.values())
+            loaded += page.size();
+        return loaded;
+    }
+    /**
+     * Reloads the rows from the loader, which places the new row where the search orders
+     * it. The row must be written to the source already.
+     * @param newRow Row added to the source
+     */
+    @Override
+    public void addRow(T newRow) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader, like {@link #addRow(java.lang.Object) addRow}.
+     * @param newRows Rows added to the source
+     */
+    @Override
+    public void addRows(Collection<? extends T> newRows) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader. The row must be deleted from the source already.
+     * @param row Row deleted from the source
+     */
+    @Override
+    public void removeRow(T row) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader, like {@link #removeRow(java.lang.Object) removeRow}.
+     * @param index Position of the row deleted from the source
+     */
+    @Override
+    public void removeRow(int index) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader, like {@link #removeRow(java.lang.Object) removeRow}.
+     * @param rows Rows deleted from the source
+     */
+    @Override
+    public void removeRows(Collection<?> rows) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader, since the rows of the range must be replaced in
+     * the source already.
+     * @param from Position of the first replaced row
+     * @param to Position after the last replaced row
+     * @param newRows Rows that replaced the range in the source
+     */
+    @Override
+    public void replaceRange(int from, int to, Collection<? extends T> newRows) {
+        reload();
+    }
+    /**
+     * Reloads the rows from the loader, since the values of loaded rows may have changed.
+     */
+    @Override
+    public void invalidateIndexes() {
+        reload();
+    }
+    /**
+     * Displays only the rows that satisfy the specified filters, which are passed to the
+     * loader along with its own restrictions, so the source is queried again.
+     * @param filters Restrictions that the displayed rows must satisfy
+     */
+    @Override
+    public void applyFilter(List<QueryFilter> filters) {
+        this.filters = filters == null ? null : new ArrayList<>(filters);
+        reload();
+    }
+    /**
+     * Removes the filter applied through {@link #applyFilter(java.util.List) applyFilter},
+     * querying the source again.
+     */
+    @Override
+    public void clearFilter() {
+        filters = null;
+        reload();
+    }
+
+    @Override
+    public boolean isFiltered() {
+        return filters != null;
+    }
+    /**
+     * Displays the rows ordered by the property of the specified column, which the loader
+     * uses instead of its own ordering, so the source is queried again.
+     * @param colIdx Index of the column
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     */
+    @Override
+    public void sortByColumn(int colIdx, boolean ascending) {
+        if (colIdx < 0 || colIdx >= getColumnCount())
+            throw new IndexOutOfBoundsException("Column: " + colIdx + ", Columns: " + getColumnCount());
+        sortColumn = colIdx;
+        sortAscending = ascending;
+        reload();
+    }
+    /**
+     * Displays the rows in the order of the loader again.
+     */
+    @Override
+    public void clearSort() {
+        sortColumn = -1;
+        reload();
+    }
+
+    @Override
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    @Override
+    public boolean isSortAscending() {
+        return sortAscending;
+    }
+    /**
+     * Finds the rows whose value for the specified column equals the specified value,
+     * asking the loader for every matching row, on the calling thread. Since the source
+     * is queried, it shouldn't be called on the Event Dispatch Thread when many rows
+     * may match.
+     * @param colIdx Index of the column
+     * @param value Value to look for
+     * @return The matching rows, ordered as the displayed rows
+     */
+    @Override
+    public List<T> findRows(int colIdx, Object value) {
+        List<QueryFilter> search = filters == null ? new ArrayList<QueryFilter>() : new ArrayList<>(filters);
+        search.add(QueryFilter.equal(getColumnProperties().get(colIdx), value));
+        try {
+            return loader.loadPage(search, getOrderProperty(), sortAscending, 0, 0, null);
+        } catch (Exception ex) {
+            LOGGER.error("Rows of a paged model could not be searched", ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static ThreadPoolExecutor createLoaders() {
+        ThreadPoolExecutor loaders = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "PagedModel-loader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        loaders.allowCoreThreadTimeOut(true);
+        return loaders;
+    }
+    /**
+     * Source of the rows displayed by a {@link PagedRichDataModel}. Implementations
+     * usually delegate to a data service, always applying their own restrictions and
+     * ordering along with the ones of the model, so pages are consistent with each other.
+     * Its methods are called on the threads of the executor of the model.
+     * @param <T> Type of the rows
+     */
+    public static interface PageLoader<T> {
+        /**
+         * Returns the total number of rows available.
+         * @param filters Restrictions applied by the model on top of the ones of the
+         * loader, or {@code null} if there are none
+         * @return the total number of rows
+         * @throws Exception When an error occurs
+         */
+        public int countRows(List<QueryFilter> filters) throws Exception;
+        /**
+         * Fetches a page of rows.
+         * @param filters Restrictions applied by the model on top of the ones of the
+         * loader, or {@code null} if there are none
+         * @param orderBy Property by which the model sorts the rows, replacing the ordering
+         * of the loader, or {@code null} to keep the ordering of the loader
+         * @param ascending {@code true} for ascending ordering by {@code orderBy}, {@code false}
+         * otherwise
+         * @param offset Position of the first row of the page within the whole result
+         * @param limit Maximum number of rows to return, or 0 to return every row
+         * @param previous Last row of the preceding page when that page is currently loaded,
+         * {@code null} otherwise. Allows implementations to continue from that row instead
+         * of skipping {@code offset} rows
+         * @return The rows of the page, at most {@code limit} of them
+         * @throws Exception When an error occurs
+         */
+        public List<T> loadPage(List<QueryFilter> filters, String orderBy, boolean ascending, int offset, int limit, T previous) throws Exception;
+    }
+}
@@ -1,99 +1,664 @@
 package core.gui;
 
-import java.lang.reflect.Method;
+import core.data.access.utils.PropertyAccessor;
+import core.data.access.utils.QueryFilter;
+import core.data.access.utils.QueryFilterEvaluator;
+import java.awt.event.ActionEvent;
+import java.beans.Introspector;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
 /**
  * Table model implementation to handle underlying data via a list of type <i>T</i>
  * and a set of {@link RichDataColumn} instances.
+ * <p>Rows can be filtered and sorted by the model itself. Sorting relies on per-column
+ * indexes, permutations of the rows ordered by the column value, which are built the
+ * first time a column is sorted and then kept up to date as rows are added or removed;
+ * so sorting again, reversing the order or looking up rows by value doesn't read the
+ * whole column again.</p>
+ * <p>Rows can be added, removed or replaced in bulk, which notifies the table through a
+ * single event per contiguous range instead of one event per row. In {@link #setCoalescing(boolean)
+ * coalescing mode} the mutation methods may be called from any thread: changes are queued
+ * and applied on the Event Dispatch Thread at most once per frame, and the events they
+ * produce are merged into the smallest set of contiguous insert, update and delete events
+ * before being published.</p>
+ * <p>Rows can also be {@code Object[]} arrays, such as the ones returned by projection
+ * searches, holding the value of every column at the column position. Such rows can be
+ * sorted and looked up, but not filtered by the model, since filters refer to properties.</p>
  * @author Rene Vera Apale
  * @param <T> Type of the data that will be displayed by this model
  */
 public class RichDataModel<T> extends AbstractTableModel {
-    
+    /**
+     * Delay, in milliseconds, between the first queued change and the moment queued
+     * changes are applied; roughly a frame at 60 frames per second.
+     */
+    public static final int FRAME_MILLIS = 16;
+    /**
+     * Rows added at once beyond which the column indexes are rebuilt rather than updated
+     * one row at a time.
+     */
+    private static final int INDEX_UPDATE_LIMIT = 32;
+    /**
+     * Events published by a single flush beyond which the table is simply told that all
+     * of its data changed.
+     */
+    private static final int MAX_COALESCED_EVENTS = 32;
+
     private final ArrayList<T> data;
     private final ArrayList<RichDataColumn> columns;
-    private final ArrayList<String> supportedMethodNames;
+    private Class<?>[] accessorTypes;
+    private PropertyAccessor[] accessors;
+    private int[][] indexes;
+    private QueryFilterEvaluator rowFilter;
+    private BitSet matching;
+    private int sortColumn = -1;
+    private boolean sortAscending;
+    private int[] view;
+    private int viewSize;
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges;
+    private final AtomicBoolean flushScheduled;
+    private final Timer flushTimer;
+    private volatile boolean coalescing;
+    private List<int[]> coalescedEvents;
     /**
-     * Initializes an instance with an empty data list, an empty column list and an empty method names list.
+     * Initializes an instance with an empty data list and an empty column list.
      */
     public RichDataModel() {
         data = new ArrayList<>();
         columns = new ArrayList<>();
-        supportedMethodNames = new ArrayList<>();
+        accessorTypes = new Class<?>[0];
+        accessors = new PropertyAccessor[0];
+        indexes = new int[0][];
+        pendingChanges = new ConcurrentLinkedQueue<>();
+        flushScheduled = new AtomicBoolean();
+        flushTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                flushPendingChanges();
+            }
+        });
+        flushTimer.setRepeats(false);
+        flushTimer.setCoalesce(false);
+    }
+    /**
+     * Enables or disables the coalescing mode. While enabled, {@link #setData(java.util.List) setData},
+     * {@link #clearData() clearData}, {@link #addRow(java.lang.Object) addRow}, {@link #addRows(java.util.Collection) addRows},
+     * both {@code removeRow} methods, {@link #removeRows(java.util.Collection) removeRows} and
+     * {@link #replaceRange(int, int, java.util.Collection) replaceRange} can be called from any
+     * thread; they only queue the change, which is applied on the Event Dispatch Thread along
+     * with every other change queued during the same frame. Until then, the rows returned by
+     * the model don't reflect the queued changes.
+     * <p>Disabling the mode from the Event Dispatch Thread applies the pending changes
+     * right away.</p>
+     * @param coalescing {@code true} to queue and coalesce changes, {@code false} to apply
+     * them immediately
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        if (!coalescing && SwingUtilities.isEventDispatchThread())
+            flushPendingChanges();
+    }
+    /**
+     * Indicates whether the coalescing mode is enabled.
+     * @return {@code true} if changes are queued and coalesced
+     */
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+    /**
+     * Applies every queued change and publishes the resulting events. Called automatically
+     * once per frame while changes are pending, but can be called earlier when the changes
+     * must be visible right away. Must be called on the Event Dispatch Thread.
+     */
+    public void flushPendingChanges() {
+        flushScheduled.set(false);
+        if (pendingChanges.isEmpty())
+            return;
+        coalescedEvents = new ArrayList<>();
+        boolean applied = false;
+        List<int[]> events;
+        try {
+            Runnable change;
+            while ((change = pendingChanges.poll()) != null)
+                change.run();
+            applied = true;
+        } finally {
+            events = coalescedEvents;
+            coalescedEvents = null;
+            if (!applied) {
+                fireTableDataChanged();
+                if (!pendingChanges.isEmpty() && flushScheduled.compareAndSet(false, true))
+                    flushTimer.start();
+            }
+        }
+        for (int[] event : events)
+            fireTableChanged(new TableModelEvent(this, event[1], event[2], TableModelEvent.ALL_COLUMNS, event[0]));
     }
     /**
      * Sets the underlying data. Data currently held by the model is
-     * cleared before setting the new info.
+     * cleared before setting the new info. If a filter or a sort is applied, they're
+     * applied to the new data as well.
      * @param newData The data that will replace the current info
      */
     public void setData(List<T> newData) {
+        if (isQueueing()) {
+            final List<T> rows = new ArrayList<>(newData);
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    setData(rows);
+                }
+            });
+            return;
+        }
         data.clear();
         data.addAll(newData);
-        fireTableDataChanged();
+        dropIndexes();
+        if (rowFilter != null)
+            evaluateFilter();
+        rebuildView();
+        notifyDataChanged();
     }
     /**
      * Clears the current data held by this model.
      */
     public void clearData() {
+        if (isQueueing()) {
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    clearData();
+                }
+            });
+            return;
+        }
         data.clear();
+        dropIndexes();
+        if (matching != null)
+            matching.clear();
+        rebuildView();
+        notifyDataChanged();
+    }
+    /**
+     * Clears the data like {@link #clearData() clearData}, and also gives back the memory
+     * the model keeps to hold it, discarding any queued change. Columns, filter and sort
+     * are kept, so the model can be filled again later. Must be called on the Event
+     * Dispatch Thread.
+     */
+    public void releaseData() {
+        pendingChanges.clear();
+        flushTimer.stop();
+        flushScheduled.set(false);
+        data.clear();
+        data.trimToSize();
+        dropIndexes();
+        if (matching != null)
+            matching = new BitSet();
+        view = null;
+        rebuildView();
+        fireTableDataChanged();
+    }
+    /**
+     * Returns the number of rows currently held in memory by the model, including the
+     * ones hidden by a filter.
+     * @return the number of rows held
+     */
+    public int getLoadedRowCount() {
+        return data.size();
+    }
+    /**
+     * Displays only the rows that satisfy the specified filters, evaluated in memory
+     * through a {@link QueryFilterEvaluator}. The underlying data is kept as-is, so the
+     * filter can be narrowed, replaced or removed without fetching the data again. While
+     * a filter or a sort is applied, the indexes received and returned by this model refer
+     * to the displayed rows.
+     * @param filters Restrictions that the displayed rows must satisfy
+     */
+    public void applyFilter(List<QueryFilter> filters) {
+        rowFilter = QueryFilterEvaluator.compile(filters);
+        evaluateFilter();
+        rebuildView();
+        fireTableDataChanged();
+    }
+    /**
+     * Removes the filter applied through {@link #applyFilter(java.util.List) applyFilter},
+     * displaying every row again.
+     */
+    public void clearFilter() {
+        rowFilter = null;
+        matching = null;
+        rebuildView();
+        fireTableDataChanged();
+    }
+    /**
+     * Indicates whether a filter is currently applied.
+     * @return {@code true} if only the rows matching a filter are displayed
+     */
+    public boolean isFiltered() {
+        return rowFilter != null;
+    }
+    /**
+     * Displays the rows ordered by the values of the specified column. Values are compared
+     * by their natural ordering, {@code null} values first. The index of the column is
+     * built if it doesn't exist yet; otherwise the order is taken straight from it.
+     * @param colIdx Index of the column
+     * @param ascending {@code true} for ascending ordering, {@code false} otherwise
+     */
+    public void sortByColumn(int colIdx, boolean ascending) {
+        getIndex(colIdx);
+        sortColumn = colIdx;
+        sortAscending = ascending;
+        rebuildView();
+        fireTableDataChanged();
+    }
+    /**
+     * Displays the rows in the order of the underlying data again.
+     */
+    public void clearSort() {
+        sortColumn = -1;
+        rebuildView();
+        fireTableDataChanged();
+    }
+    /**
+     * Returns the index of the column by which the rows are sorted.
+     * @return the index of the sorted column, or {@code -1} if the rows aren't sorted
+     */
+    public int getSortColumn() {
+        return sortColumn;
+    }
+    /**
+     * Indicates whether the rows are sorted in ascending order.
+     * @return {@code true} for ascending ordering, {@code false} otherwise
+     */
+    public boolean isSortAscending() {
+        return sortAscending;
+    }
+    /**
+     * Finds the displayed rows whose value for the specified column equals the specified
+     * value, through a binary search over the index of the column.
+     * @param colIdx Index of the column
+     * @param value Value to look for
+     * @return The matching rows, ordered as in the underlying data
+     */
+    public List<T> findRows(int colIdx, Object value) {
+        int[] index = getIndex(colIdx);
+        int size = data.size();
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareValues(getModelValue(index[mid], colIdx), value) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        List<T> rows = new ArrayList<>();
+        for (int i = low; i < size; i++) {
+            Object current = getModelValue(index[i], colIdx);
+            if (compareValues(current, value) != 0)
+                break;
+            if (matching == null || matching.get(index[i]))
+                rows.add(data.get(index[i]));
+        }
+        return rows;
+    }
+    /**
+     * Discards the column indexes, which will be rebuilt the next time they're needed.
+     * Indexes follow rows being added and removed, but not changes to the values of rows
+     * already in the model; call this method after modifying such rows.
+     */
+    public void invalidateIndexes() {
+        dropIndexes();
+        if (rowFilter != null)
+            evaluateFilter();
+        rebuildView();
         fireTableDataChanged();
     }
+    /**
+     * Sorts the rows by the column whose header is clicked, reversing the order when the
+     * same header is clicked again. Meant to be used instead of a {@link javax.swing.table.TableRowSorter TableRowSorter},
+     * which would read every cell for every comparison.
+     * @param table Table that displays this model
+     */
+    public void sortOnHeaderClick(final JTable table) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent evt) {
+                int viewColumn = table.columnAtPoint(evt.getPoint());
+                if (viewColumn < 0)
+                    return;
+                int colIdx = table.convertColumnIndexToModel(viewColumn);
+                sortByColumn(colIdx, colIdx != getSortColumn() || !isSortAscending());
+            }
+        });
+    }
+    /**
+     * Returns the position within the underlying data of the row displayed at the
+     * specified index. Both are the same unless a filter or a sort is applied.
+     * @param index Index of a displayed row
+     * @return The position of the row within the underlying data
+     */
+    public int getModelIndex(int index) {
+        if (view == null)
+            return index;
+        if (index < 0 || index >= viewSize)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + viewSize);
+        return view[index];
+    }
     /**
      * Adds a new column to the existing list.
      * @param col Column to be added
      */
     public void addColumn(RichDataColumn col) {
         columns.add(col);
+        accessorTypes = new Class<?>[columns.size()];
+        accessors = new PropertyAccessor[columns.size()];
+        dropIndexes();
     }
     /**
-     * Scans the names for all the public methods of the specified class and
-     * adds them to a list. The methods are obtained via {@link Class#getMethods() Class.getMethods()}
+     * Resolves ahead of time the accessors that read the properties of every column
+     * from objects of the specified class. Calling this method is optional, since accessors
+     * are resolved and cached the first time a cell of a given class is read, but it moves
+     * that cost out of the first repaint.
      * @param type The class which methods will be scanned
      */
     public void loadAvailableMethods(Class type) {
-        for (Method method : type.getMethods())
-            supportedMethodNames.add(method.getName());
+        for (int i = 0; i < columns.size(); i++)
+            getAccessor(type, i);
     }
     /**
-     * Appends a new row to the current underlying data.
+     * Appends a new row to the current underlying data. If a filter is applied the
+     * row is only displayed when it satisfies the filter; if a sort is applied the row
+     * is displayed in its sorted position.
      * @param newRow The new object to append
      */
-    public void addRow(T newRow) {
+    public void addRow(final T newRow) {
+        if (isQueueing()) {
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    addRow(newRow);
+                }
+            });
+            return;
+        }
         data.add(newRow);
-        fireTableRowsInserted(data.size(), data.size() + 1);
+        int modelIdx = data.size() - 1;
+        for (int col = 0; col < indexes.length; col++) {
+            if (indexes[col] != null)
+                insertIntoIndex(col, modelIdx);
+        }
+        if (rowFilter != null && rowFilter.matches(newRow))
+            matching.set(modelIdx);
+        if (view == null) {
+            notifyRowsInserted(modelIdx, modelIdx);
+            return;
+        }
+        int viewIdx = insertIntoView(modelIdx);
+        if (viewIdx >= 0)
+            notifyRowsInserted(viewIdx, viewIdx);
+    }
+    /**
+     * Appends several rows to the current underlying data. The table is notified through
+     * a single event: an insertion of the whole range when neither a filter nor a sort is
+     * applied, a change of all of its data otherwise.
+     * @param newRows The new objects to append, in order
+     */
+    public void addRows(Collection<? extends T> newRows) {
+        if (isQueueing()) {
+            final List<T> rows = new ArrayList<>(newRows);
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    addRows(rows);
+                }
+            });
+            return;
+        }
+        if (newRows.isEmpty())
+            return;
+        int first = data.size();
+        data.addAll(newRows);
+        int last = data.size() - 1;
+        if (newRows.size() > INDEX_UPDATE_LIMIT)
+            dropIndexes();
+        else {
+            for (int col = 0; col < indexes.length; col++) {
+                if (indexes[col] == null)
+                    continue;
+                for (int modelIdx = first; modelIdx <= last; modelIdx++)
+                    insertIntoIndex(col, modelIdx);
+            }
+        }
+        if (rowFilter != null) {
+            for (int modelIdx = first; modelIdx <= last; modelIdx++) {
+                if (rowFilter.matches(data.get(modelIdx)))
+                    matching.set(modelIdx);
+            }
+        }
+        if (view == null) {
+            notifyRowsInserted(first, last);
+            return;
+        }
+        rebuildView();
+        notifyDataChanged();
     }
     /**
      * Removes a row from the underlying data.
      * @param row Object that should be removed
      */
-    public void removeRow(T row) {
+    public void removeRow(final T row) {
+        if (isQueueing()) {
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    removeRow(row);
+                }
+            });
+            return;
+        }
         int removedIdx = data.indexOf(row);
-        data.remove(row);
-        fireTableRowsDeleted(removedIdx, removedIdx);
+        if (removedIdx >= 0)
+            removeModelRow(removedIdx);
     }
     /**
-     * Removes a row from the underlying data.
+     * Removes a row from the underlying data. In coalescing mode the index is resolved
+     * when the change is applied, not when it's queued.
      * @param index Index of the row that should be removed.
      */
-    public void removeRow(int index) {
-        data.remove(index);
-        fireTableRowsDeleted(index, index);
+    public void removeRow(final int index) {
+        if (isQueueing()) {
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    removeRow(index);
+                }
+            });
+            return;
+        }
+        removeModelRow(getModelIndex(index));
+    }
+    /**
+     * Removes every occurrence of the specified objects from the underlying data in a
+     * single pass. The table is notified through one deletion event per contiguous range
+     * of removed rows when neither a filter nor a sort is applied, and through a single
+     * change of all of its data otherwise.
+     * @param rows Objects that should be removed
+     */
+    public void removeRows(Collection<?> rows) {
+        if (isQueueing()) {
+            final List<Object> targets = new ArrayList<>(rows);
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    removeRows(targets);
+                }
+            });
+            return;
+        }
+        if (rows.isEmpty())
+            return;
+        Set<Object> targets = new HashSet<>(rows);
+        int oldSize = data.size();
+        int[] positions = new int[oldSize];
+        int kept = 0;
+        for (int i = 0; i < oldSize; i++) {
+            T row = data.get(i);
+            if (targets.contains(row))
+                positions[i] = -1;
+            else {
+                positions[i] = kept;
+                data.set(kept++, row);
+            }
+        }
+        if (kept == oldSize)
+            return;
+        data.subList(kept, oldSize).clear();
+        for (int[] index : indexes) {
+            if (index == null)
+                continue;
+            int count = 0;
+            for (int i = 0; i < oldSize; i++) {
+                int position = positions[index[i]];
+                if (position >= 0)
+                    index[count++] = position;
+            }
+        }
+        if (matching != null) {
+            BitSet remaining = new BitSet(kept);
+            for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+                if (positions[i] >= 0)
+                    remaining.set(positions[i]);
+            }
+            matching = remaining;
+        }
+        rebuildView();
+        if (view != null) {
+            notifyDataChanged();
+            return;
+        }
+        for (int last = oldSize - 1; last >= 0; last--) {
+            if (positions[last] >= 0)
+                continue;
+            int first = last;
+            while (first > 0 && positions[first - 1] < 0)
+                first--;
+            notifyRowsDeleted(first, last);
+            last = first;
+        }
+    }
+    /**
+     * Replaces a range of the underlying data with the specified rows, which may be more
+     * or less than the rows being replaced. When neither a filter nor a sort is applied,
+     * the table is notified of the rows updated in place and of the rows inserted or
+     * deleted after them; otherwise of a change of all of its data. Column indexes are
+     * rebuilt the next time they're needed.
+     * @param from Position within the underlying data of the first row to replace
+     * @param to Position within the underlying data following the last row to replace
+     * @param newRows Objects that will take the place of the replaced rows, in order
+     */
+    public void replaceRange(final int from, final int to, Collection<? extends T> newRows) {
+        if (isQueueing()) {
+            final List<T> rows = new ArrayList<>(newRows);
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    replaceRange(from, to, rows);
+                }
+            });
+            return;
+        }
+        int oldSize = data.size();
+        if (from < 0 || to > oldSize || from > to)
+            throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + oldSize);
+        int removed = to - from;
+        int added = newRows.size();
+        data.subList(from, to).clear();
+        data.addAll(from, newRows);
+        dropIndexes();
+        if (matching != null) {
+            BitSet tail = matching.get(to, oldSize);
+            matching.clear(from, oldSize);
+            for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1))
+                matching.set(from + added + i);
+            for (int modelIdx = from; modelIdx < from + added; modelIdx++) {
+                if (rowFilter.matches(data.get(modelIdx)))
+                    matching.set(modelIdx);
+            }
+        }
+        rebuildView();
+        if (view != null) {
+            notifyDataChanged();
+            return;
+        }
+        int updated = Math.min(removed, added);
+        if (updated > 0)
+            notifyRowsUpdated(from, from + updated - 1);
+        if (removed > added)
+            notifyRowsDeleted(from + updated, to - 1);
+        else if (added > removed)
+            notifyRowsInserted(from + updated, from + added - 1);
+    }
+
+    /**
+     * Removes a row of the underlying data. The displayed rows are updated in place rather
+     * than rebuilt: the row is looked up by binary search and dropped from them, and the
+     * positions that follow it are shifted.
+     */
+    private void removeModelRow(int modelIdx) {
+        int viewIdx = findInView(modelIdx);
+        int oldSize = data.size();
+        data.remove(modelIdx);
+        for (int[] index : indexes) {
+            if (index != null)
+                removeFromIndex(index, oldSize, modelIdx);
+        }
+        if (matching != null) {
+            BitSet tail = matching.get(modelIdx + 1, oldSize);
+            matching.clear(modelIdx, oldSize);
+            for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1))
+                matching.set(modelIdx + i);
+        }
+        if (view != null) {
+            if (viewIdx >= 0) {
+                System.arraycopy(view, viewIdx + 1, view, viewIdx, viewSize - viewIdx - 1);
+                viewSize--;
+            }
+            for (int i = 0; i < viewSize; i++) {
+                if (view[i] > modelIdx)
+                    view[i]--;
+            }
+        }
+        if (viewIdx >= 0)
+            notifyRowsDeleted(viewIdx, viewIdx);
     }
     /**
      * Returns the data object pointed by the specified index.
-     * @param index Position of the object within the underlying data collection
+     * @param index Position of the object within the displayed rows
      * @return The object represented by the specified index
      */
     public T getRow(int index) {
-        return data.get(index);
+        return data.get(getModelIndex(index));
     }
 
     @Override
     public int getRowCount() {
-        return data.size();
+        return view == null ? data.size() : viewSize;
     }
 
     @Override
@@ -113,30 +678,357 @@ public class RichDataModel<T> extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIdx, int colIdx) {
-        Object row = data.get(rowIdx);
-        String requestedMethod;
-        if (columns.get(colIdx).getDataType() == boolean.class | columns.get(colIdx).getDataType() == Boolean.class)
-            requestedMethod = "is";
-        else
-            requestedMethod = "get";
-        requestedMethod += columns.get(colIdx).getProperty();
-        Method method = null;
-        try {
-            for (String methodName : supportedMethodNames) {
-                if (methodName.equalsIgnoreCase(requestedMethod)) {
-                    method = row.getClass().getMethod(methodName);
+        return getCellValue(getRow(rowIdx), colIdx);
+    }
+    /**
+     * Returns the names of the properties displayed by the columns, in column order, as
+     * expected by {@link core.data.service.IExtendedDataService#getRecordsProjection(java.util.List, java.util.List, java.lang.String, boolean)
+     * getRecordsProjection}: the first letter of every part of the property path is turned
+     * to lower case, following the JavaBeans rules, since columns may name their properties
+     * after the getters. The rows returned by that method can be displayed by this model
+     * as they are.
+     * @return A new list with the property of every column
+     */
+    public List<String> getColumnProperties() {
+        List<String> properties = new ArrayList<>(columns.size());
+        for (RichDataColumn column : columns) {
+            StringBuilder property = new StringBuilder();
+            for (String part : column.getProperty().split("\\.")) {
+                if (property.length() > 0)
+                    property.append('.');
+                property.append(Introspector.decapitalize(part));
+            }
+            properties.add(property.toString());
+        }
+        return properties;
+    }
+    /**
+     * Indicates whether a mutation must be queued instead of applied: always in coalescing
+     * mode, except for the changes being applied by {@link #flushPendingChanges() flushPendingChanges}.
+     */
+    private boolean isQueueing() {
+        return coalescing && !(SwingUtilities.isEventDispatchThread() && coalescedEvents != null);
+    }
+
+    /**
+     * Queues the change, scheduling a flush unless one is already scheduled. The timer is
+     * only touched on the Event Dispatch Thread.
+     */
+    private void enqueue(Runnable change) {
+        pendingChanges.add(change);
+        if (!flushScheduled.compareAndSet(false, true))
+            return;
+        if (SwingUtilities.isEventDispatchThread()) {
+            flushTimer.start();
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                flushTimer.start();
+            }
+        });
+    }
+
+    private void notifyRowsInserted(int first, int last) {
+        notifyChange(TableModelEvent.INSERT, first, last);
+    }
+
+    private void notifyRowsUpdated(int first, int last) {
+        notifyChange(TableModelEvent.UPDATE, first, last);
+    }
+
+    private void notifyRowsDeleted(int first, int last) {
+        notifyChange(TableModelEvent.DELETE, first, last);
+    }
+
+    private void notifyDataChanged() {
+        notifyChange(TableModelEvent.UPDATE, 0, Integer.MAX_VALUE);
+    }
+    /**
+     * Fires the event right away, or merges it with the last event of the current flush:
+     * rows inserted within or right after a previous insertion extend it, rows deleted
+     * around a previous deletion extend it, and overlapping or adjacent updates become a
+     * single update. Any change of all the data supersedes every other event.
+     */
+    private void notifyChange(int type, int first, int last) {
+        if (coalescedEvents == null) {
+            fireTableChanged(new TableModelEvent(this, first, last, TableModelEvent.ALL_COLUMNS, type));
+            return;
+        }
+        int[] previous = coalescedEvents.isEmpty() ? null : coalescedEvents.get(coalescedEvents.size() - 1);
+        if (previous != null && previous[2] == Integer.MAX_VALUE)
+            return;
+        if (last == Integer.MAX_VALUE || coalescedEvents.size() == MAX_COALESCED_EVENTS) {
+            coalescedEvents.clear();
+            coalescedEvents.add(new int[]{TableModelEvent.UPDATE, 0, Integer.MAX_VALUE});
+            return;
+        }
+        if (previous != null && previous[0] == type) {
+            switch (type) {
+                case TableModelEvent.INSERT:
+                    if (first >= previous[1] && first <= previous[2] + 1) {
+                        previous[2] += last - first + 1;
+                        return;
+                    }
                     break;
-                }
+                case TableModelEvent.DELETE:
+                    if (previous[1] >= first && previous[1] <= last + 1) {
+                        previous[2] = last + previous[2] - previous[1] + 1;
+                        previous[1] = first;
+                        return;
+                    }
+                    break;
+                default:
+                    if (first <= previous[2] + 1 && last >= previous[1] - 1) {
+                        previous[1] = Math.min(first, previous[1]);
+                        previous[2] = Math.max(last, previous[2]);
+                        return;
+                    }
             }
-        } catch(Exception ex) {
-            throw new RuntimeException(ex);
         }
-        if (method == null)
-            throw new RuntimeException("Method " + requestedMethod + " was not found in type " + row.getClass().getName());
-        try {
-            return method.invoke(row);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+        coalescedEvents.add(new int[]{type, first, last});
+    }
+    /**
+     * Returns the accessor for the property of the specified column, as declared
+     * in the specified class. The last resolved accessor of every column is kept, so
+     * rows of the same class don't need any lookup at all.
+     */
+    private PropertyAccessor getAccessor(Class<?> type, int colIdx) {
+        if (accessorTypes[colIdx] == type)
+            return accessors[colIdx];
+        RichDataColumn column = columns.get(colIdx);
+        boolean booleanProperty = column.getDataType() == boolean.class || column.getDataType() == Boolean.class;
+        PropertyAccessor accessor = PropertyAccessor.of(type, column.getProperty(), booleanProperty);
+        accessors[colIdx] = accessor;
+        accessorTypes[colIdx] = type;
+        return accessor;
+    }
+
+    private Object getModelValue(int modelIdx, int colIdx) {
+        return getCellValue(data.get(modelIdx), colIdx);
+    }
+    /**
+     * Reads the value of a column from a row: the element at the column position for
+     * {@code Object[]} rows, the column property for any other object.
+     */
+    private Object getCellValue(Object row, int colIdx) {
+        if (row == null)
+            return null;
+        if (row instanceof Object[])
+            return ((Object[]) row)[colIdx];
+        return getAccessor(row.getClass(), colIdx).get(row);
+    }
+
+    private void dropIndexes() {
+        indexes = new int[columns.size()][];
+    }
+    /**
+     * Returns the index of the specified column, building it if needed. Values are read
+     * once per row and the positions are sorted with a stable merge sort, so rows with the
+     * same value keep the order of the underlying data.
+     */
+    private int[] getIndex(int colIdx) {
+        if (indexes[colIdx] != null)
+            return indexes[colIdx];
+        int size = data.size();
+        Object[] keys = new Object[size];
+        int[] index = new int[Math.max(16, size)];
+        for (int i = 0; i < size; i++) {
+            keys[i] = getModelValue(i, colIdx);
+            index[i] = i;
+        }
+        mergeSort(index, new int[size], 0, size, keys);
+        indexes[colIdx] = index;
+        return index;
+    }
+
+    private static void mergeSort(int[] index, int[] buffer, int from, int to, Object[] keys) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(index, buffer, from, mid, keys);
+        mergeSort(index, buffer, mid, to, keys);
+        if (compareValues(keys[index[mid - 1]], keys[index[mid]]) <= 0)
+            return;
+        System.arraycopy(index, from, buffer, from, to - from);
+        int left = from, right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareValues(keys[buffer[left]], keys[buffer[right]]) <= 0))
+                index[i] = buffer[left++];
+            else
+                index[i] = buffer[right++];
+        }
+    }
+
+    private void insertIntoIndex(int colIdx, int modelIdx) {
+        int[] index = indexes[colIdx];
+        int size = modelIdx;
+        Object value = getModelValue(modelIdx, colIdx);
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareValues(getModelValue(index[mid], colIdx), value) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        if (size == index.length) {
+            int[] grown = new int[Math.max(16, size * 2)];
+            System.arraycopy(index, 0, grown, 0, size);
+            index = grown;
+            indexes[colIdx] = index;
+        }
+        System.arraycopy(index, low, index, low + 1, size - low);
+        index[low] = modelIdx;
+    }
+
+    private static void removeFromIndex(int[] index, int size, int modelIdx) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (index[i] == modelIdx)
+                continue;
+            index[kept++] = index[i] > modelIdx ? index[i] - 1 : index[i];
+        }
+    }
+
+    private void evaluateFilter() {
+        matching = new BitSet(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            if (rowFilter.matches(data.get(i)))
+                matching.set(i);
+        }
+    }
+    /**
+     * Computes the displayed rows from the active filter and sort. When neither is applied
+     * the rows are displayed as they are in the underlying data.
+     */
+    private void rebuildView() {
+        if (rowFilter == null && sortColumn < 0) {
+            view = null;
+            viewSize = 0;
+            return;
+        }
+        int size = data.size();
+        if (view == null || view.length < size)
+            view = new int[Math.max(16, size)];
+        int[] order = sortColumn >= 0 ? getIndex(sortColumn) : null;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int modelIdx;
+            if (order == null)
+                modelIdx = i;
+            else
+                modelIdx = sortAscending ? order[i] : order[size - 1 - i];
+            if (matching == null || matching.get(modelIdx))
+                view[count++] = modelIdx;
+        }
+        viewSize = count;
+    }
+
+    /**
+     * Inserts the last row of the underlying data into the displayed rows, at the position
+     * {@link #rebuildView() rebuildView} would give it: after the rows with the same value
+     * when sorted ascending, since the row is the last one of the data, and before them
+     * when sorted descending.
+     * @return The position of the row among the displayed rows, or {@code -1} if it's
+     * hidden by the filter
+     */
+    private int insertIntoView(int modelIdx) {
+        if (matching != null && !matching.get(modelIdx))
+            return -1;
+        int position = viewSize;
+        if (sortColumn >= 0) {
+            Object value = getModelValue(modelIdx, sortColumn);
+            int low = 0, high = viewSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int comparison = compareValues(getModelValue(view[mid], sortColumn), value);
+                if (sortAscending ? comparison <= 0 : comparison > 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            position = low;
+        }
+        if (viewSize == view.length)
+            view = Arrays.copyOf(view, Math.max(16, viewSize * 2));
+        System.arraycopy(view, position, view, position + 1, viewSize - position);
+        view[position] = modelIdx;
+        viewSize++;
+        return position;
+    }
+    /**
+     * Returns the position of a row of the underlying data among the displayed rows,
+     * through binary searches: by value, for the range of rows with the same value as the
+     * row when sorted, and then by position within the data, in which order the rows of
+     * that range are displayed. When the sorted value of some row changed after the view
+     * was built, the searches may miss, and the displayed rows are scanned instead.
+     * @return The position of the row among the displayed rows, or {@code -1} if it's
+     * hidden by the filter
+     */
+    private int findInView(int modelIdx) {
+        if (view == null)
+            return modelIdx;
+        if (matching != null && !matching.get(modelIdx))
+            return -1;
+        int from = 0, to = viewSize;
+        if (sortColumn >= 0) {
+            Object value = getModelValue(modelIdx, sortColumn);
+            int high = viewSize;
+            while (from < high) {
+                int mid = (from + high) >>> 1;
+                int comparison = compareValues(getModelValue(view[mid], sortColumn), value);
+                if (sortAscending ? comparison < 0 : comparison > 0)
+                    from = mid + 1;
+                else
+                    high = mid;
+            }
+            to = from;
+            high = viewSize;
+            while (to < high) {
+                int mid = (to + high) >>> 1;
+                if (compareValues(getModelValue(view[mid], sortColumn), value) == 0)
+                    to = mid + 1;
+                else
+                    high = mid;
+            }
+        }
+        boolean ascending = sortColumn < 0 || sortAscending;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (view[mid] == modelIdx)
+                return mid;
+            if (ascending == view[mid] < modelIdx)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] == modelIdx)
+                return i;
+        }
+        return -1;
+    }
+    /**
+     * Compares two cell values, {@code null} values first. Values of different classes,
+     * or that aren't {@link Comparable}, are compared by their text representation.
+     */
+    private static int compareValues(Object left, Object right) {
+        if (left == right)
+            return 0;
+        if (left == null)
+            return -1;
+        if (right == null)
+            return 1;
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            // Both values are of the same class, which is comparable to itself
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) left;
+            return comparable.compareTo(right);
         }
+        if (left instanceof Number && right instanceof Number)
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        return left.toString().compareTo(right.toString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package core.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Saving of an {@link AppConfig} to its file and watching of the file for changes made
+ * by other programs.
+ * @author Rene Vera Apale
+ */
+public class AppConfigTest {
+
+    private Path directory;
+    private Path file;
+    private AppConfig config;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("appconfig");
+        file = directory.resolve("test.properties");
+        Properties props = new Properties();
+        props.setProperty("pool.size", "8");
+        config = new AppConfig("Pruebas", "test.properties", directory.toString(), props) {
+            @Override
+            public Properties getDefault() {
+                return new Properties();
+            }
+        };
+        config.load();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        config.stopWatching();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void savesWithoutLeavingTemporaryFiles() throws Exception {
+        assertEquals("8", read().getProperty("pool.size"));
+        config.setProperty("pool.size", "12");
+        config.update();
+        assertEquals("12", read().getProperty("pool.size"));
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream)
+                files.add(path);
+        }
+        assertEquals(1, files.size());
+        assertEquals(file, files.get(0));
+    }
+
+    @Test
+    public void ownWritesDontRevertLaterValues() throws Exception {
+        config.startWatching();
+        config.setProperty("pool.size", "12");
+        config.update();
+        config.setProperty("pool.size", "16");
+        Thread.sleep(1000);
+        assertEquals("16", config.getProperty("pool.size"));
+        assertEquals("12", read().getProperty("pool.size"));
+    }
+
+    @Test
+    public void loadsChangesMadeByOtherPrograms() throws Exception {
+        config.startWatching();
+        Properties props = read();
+        props.setProperty("pool.size", "20");
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            props.store(stream, null);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!"20".equals(config.getProperty("pool.size")) && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        assertEquals("20", config.getProperty("pool.size"));
+    }
+
+    private Properties read() throws IOException {
+        Properties props = new Properties();
+        try (InputStream stream = Files.newInputStream(file)) {
+            props.load(stream);
+        }
+        return props;
+    }
+}
@@ -0,0 +1,138 @@
+package core.config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Parsing of typed {@link ConfigSetting settings}, and their update as the values of an
+ * {@link AppConfig} change.
+ * @author Rene Vera Apale
+ */
+public class ConfigSettingTest {
+
+    private AppConfig config;
+
+    @Before
+    public void setUp() {
+        Properties props = new Properties();
+        props.setProperty("pool.size", "8");
+        props.setProperty("pool.timeout", "10s");
+        config = new AppConfig("Pruebas", "test.properties", System.getProperty("java.io.tmpdir"), props) {
+            @Override
+            public Properties getDefault() {
+                return new Properties();
+            }
+        };
+    }
+
+    @Test
+    public void parsesDurationsWithUnitsOrInIsoFormat() {
+        ConfigSetting.DurationSetting setting = config.durationSetting("timeout", Duration.ofSeconds(1));
+        assertEquals(Duration.ofSeconds(10), setting.parse("10s"));
+        assertEquals(Duration.ofSeconds(5), setting.parse("PT5S"));
+        assertEquals(Duration.ofMinutes(90), setting.parse("pt1h30m"));
+        assertEquals(Duration.ofMillis(250), setting.parse("250"));
+        assertEquals(Duration.ofMillis(250), setting.parse(" 250ms "));
+        assertEquals(Duration.ofMinutes(3), setting.parse("3M"));
+        assertEquals(Duration.ofHours(2), setting.parse("2 h"));
+        assertEquals(Duration.ofDays(1), setting.parse("1d"));
+        assertEquals(Duration.ofSeconds(1), setting.parse("  "));
+        assertEquals(Duration.ofSeconds(1), setting.parse(null));
+    }
+
+    @Test
+    public void rejectsInvalidDurations() {
+        ConfigSetting.DurationSetting setting = config.durationSetting("timeout", Duration.ofSeconds(1));
+        for (String invalid : Arrays.asList("10x", "s", "diez", "PT5", "P", "1.5s", "10 s s")) {
+            try {
+                setting.parse(invalid);
+                fail("Invalid duration accepted: " + invalid);
+            } catch (IllegalArgumentException ex) {
+                assertTrue(ex.getMessage().contains("\"timeout\""));
+                assertTrue(ex.getMessage().contains(invalid));
+            }
+        }
+    }
+
+    @Test
+    public void parsesScalarsEnumsAndLists() {
+        assertEquals(Integer.valueOf(-3), config.intSetting("int", 0).parse(" -3 "));
+        assertEquals(Long.valueOf(10000000000L), config.longSetting("long", 0).parse("10000000000"));
+        assertEquals(Boolean.TRUE, config.booleanSetting("bool", false).parse("TRUE"));
+        assertEquals(TimeUnit.SECONDS, config.enumSetting("unit", TimeUnit.class, TimeUnit.DAYS).parse("seconds"));
+        List<String> list = config.listSetting("list", Collections.<String>emptyList()).parse(" a, ,b ,c,");
+        assertEquals(Arrays.asList("a", "b", "c"), list);
+        assertRejected(config.intSetting("int", 0), "3.0");
+        assertRejected(config.longSetting("long", 0), "1e3");
+        assertRejected(config.booleanSetting("bool", false), "yes");
+        assertRejected(config.enumSetting("unit", TimeUnit.class, TimeUnit.DAYS), "weeks");
+    }
+
+    @Test
+    public void settingsFollowTheConfiguration() {
+        ConfigSetting.IntSetting size = config.intSetting("pool.size", 4);
+        ConfigSetting.DurationSetting timeout = config.durationSetting("pool.timeout", Duration.ZERO);
+        assertEquals(8, size.getInt());
+        assertEquals(10000, timeout.getMillis());
+        config.setProperty("pool.timeout", "PT5S");
+        assertEquals(5000, timeout.getMillis());
+        assertEquals(Duration.ofSeconds(5), timeout.get());
+        assertSame(size, config.intSetting("pool.size", 4));
+    }
+
+    @Test
+    public void invalidValueRejectsTheWholeChange() {
+        ConfigSetting.DurationSetting timeout = config.durationSetting("pool.timeout", Duration.ZERO);
+        try {
+            config.setProperty("pool.timeout", "pronto");
+            fail("Invalid value accepted");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("pool.timeout"));
+        }
+        assertEquals("10s", config.getProperty("pool.timeout"));
+        assertEquals(10000, timeout.getMillis());
+    }
+
+    @Test
+    public void keyCanOnlyBeDeclaredOnce() {
+        config.intSetting("pool.size", 4);
+        try {
+            config.longSetting("pool.size", 4);
+            fail("Key declared with another type");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            config.intSetting("pool.size", 5);
+            fail("Key declared with another default");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        config.setProperty("pool.retries", "muchos");
+        try {
+            config.intSetting("pool.retries", 3);
+            fail("Invalid value accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static void assertRejected(ConfigSetting<?> setting, String raw) {
+        try {
+            setting.parse(raw);
+            fail("Invalid value accepted: " + raw);
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
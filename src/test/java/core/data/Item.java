@@ -0,0 +1,86 @@
+package core.data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.Version;
+
+/**
+ * Entity used by the tests that run against an H2 database. Names are limited to ten
+ * characters, so a longer one makes the database reject the record.
+ * @author Rene Vera Apale
+ */
+@Entity
+public class Item {
+
+    @Id
+    @GeneratedValue
+    private Integer id;
+    @Version
+    private Integer version;
+    @Column(length = 10)
+    private String name;
+    private Integer quantity;
+    private boolean active;
+    @ManyToOne
+    private Item parent;
+
+    public Item() {
+    }
+
+    public Item(String name, Integer quantity, boolean active) {
+        this.name = name;
+        this.quantity = quantity;
+        this.active = active;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public Item getParent() {
+        return parent;
+    }
+
+    public void setParent(Item parent) {
+        this.parent = parent;
+    }
+}
@@ -0,0 +1,161 @@
+package core.data.access.utils;
+
+import core.data.Item;
+import core.data.session.H2DataSession;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Compilation of {@link QueryFilter} trees to HQL by {@link QueryFilterCompiler}, along
+ * with its plan cache. The compiled queries are run against an H2 database.
+ * @author Rene Vera Apale
+ */
+public class QueryFilterCompilerTest {
+
+    private QueryFilterCompiler compiler;
+    private H2DataSession dataSession;
+    private Session session;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = new QueryFilterCompiler(Item.class.getName());
+        dataSession = new H2DataSession(Item.class);
+        dataSession.init(null);
+        session = dataSession.openSession();
+        session.beginTransaction();
+        Item parent = new Item("padre", 5, true);
+        session.save(parent);
+        session.save(new Item("uno", 1, true));
+        session.save(new Item("dos", 2, false));
+        session.save(new Item(null, 3, true));
+        Item child = new Item("hijo", 4, false);
+        child.setParent(parent);
+        session.save(child);
+        session.getTransaction().commit();
+        session.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        session.close();
+        dataSession.close();
+    }
+
+    @Test
+    public void filtersWithSameShapeShareTheirPlan() {
+        CompiledQuery first = compiler.select(filters(QueryFilter.equal("name", "uno"), QueryFilter.greater("quantity", 1)), "name", true);
+        CompiledQuery second = compiler.select(filters(QueryFilter.equal("name", "dos"), QueryFilter.greater("quantity", 7)), "name", true);
+        assertSame(first.getHql(), second.getHql());
+        assertArrayEquals(new Object[]{"dos", 7}, second.getParameters());
+        assertEquals(1, compiler.getPlanCount());
+        CompiledQuery descending = compiler.select(filters(QueryFilter.equal("name", "dos"), QueryFilter.greater("quantity", 7)), "name", false);
+        assertNotSame(first.getHql(), descending.getHql());
+        assertEquals(2, compiler.getPlanCount());
+    }
+
+    @Test
+    public void equalityToNullCompilesToIsNull() {
+        CompiledQuery isNull = compiler.select(filters(QueryFilter.equal("name", null)), null, true);
+        assertEquals("from " + Item.class.getName() + " e where e.name is null", isNull.getHql());
+        assertEquals(0, isNull.getParameters().length);
+        CompiledQuery isNotNull = compiler.select(filters(QueryFilter.notEqual("name", null)), null, true);
+        assertEquals("from " + Item.class.getName() + " e where e.name is not null", isNotNull.getHql());
+        CompiledQuery equal = compiler.select(filters(QueryFilter.equal("name", "uno")), null, true);
+        assertNotSame(isNull.getHql(), equal.getHql());
+        assertEquals(3, compiler.getPlanCount());
+        assertEquals(Arrays.asList(3), quantities(isNull));
+        assertEquals(Arrays.asList(1, 2, 4, 5), quantities(isNotNull));
+        assertEquals(Arrays.asList(1), quantities(equal));
+        assertEquals(Arrays.asList(1, 2, 4, 5), quantities(compiler.select(filters(QueryFilter.notEqual("name", "tres")), null, true)));
+    }
+
+    @Test
+    public void compilesEveryFilterType() {
+        List<QueryFilter> filters = filters(
+                QueryFilter.ilike("name", "O"),
+                QueryFilter.or(Arrays.asList(QueryFilter.lower("quantity", 2), QueryFilter.greaterEqual("quantity", 4))),
+                QueryFilter.in("quantity", Arrays.asList(1, 2, 4, 5)),
+                QueryFilter.lowerEqual("quantity", 5),
+                QueryFilter.isNotNull("name"));
+        assertEquals(Arrays.asList(1, 4), quantities(compiler.select(filters, "quantity", true)));
+        assertEquals(Collections.emptyList(), quantities(compiler.select(filters(QueryFilter.in("quantity", new ArrayList<>())), null, true)));
+        assertEquals(Arrays.asList(4), quantities(compiler.select(filters(QueryFilter.lowerThanProperty("quantity", "parent.quantity")), null, true)));
+        assertEquals(Arrays.asList(3), quantities(compiler.select(filters(QueryFilter.isNull("name")), null, true)));
+        assertEquals(5L, compiler.count(null).createQuery(session).uniqueResult());
+    }
+
+    @Test
+    public void pagesContinueAfterTheLastRecord() {
+        List<?> page = compiler.selectAfter(null, "active", true, "id", false, Integer.MAX_VALUE).createQuery(session).list();
+        assertEquals(3, page.size());
+        CompiledQuery first = compiler.selectPage(null, "active", true, "id");
+        List<?> all = first.createQuery(session).list();
+        Item second = (Item) all.get(1);
+        List<?> rest = compiler.selectAfter(null, "active", true, "id", second.isActive(), second.getId()).createQuery(session).list();
+        assertEquals(all.subList(2, all.size()), rest);
+    }
+
+    @Test
+    public void projectsNestedPropertiesThroughLeftJoins() {
+        List<?> rows = compiler.selectProjection(null, Arrays.asList("quantity", "parent.name"), "quantity", true)
+                .createQuery(session).list();
+        assertEquals(5, rows.size());
+        assertArrayEquals(new Object[]{1, null}, (Object[]) rows.get(0));
+        assertArrayEquals(new Object[]{4, "padre"}, (Object[]) rows.get(3));
+    }
+
+    @Test
+    public void rejectsInvalidPropertyNames() {
+        assertRejected(filters(QueryFilter.equal("name = name or 1", 1)), null);
+        assertRejected(filters(QueryFilter.greaterThanProperty("quantity", "id) or (1 = 1")), null);
+        assertRejected(filters(QueryFilter.or(Arrays.asList(QueryFilter.isNull("parent..name")))), null);
+        assertRejected(null, "name desc, id");
+        assertEquals(0, compiler.getPlanCount());
+    }
+
+    @Test
+    public void discardsLeastRecentlyUsedPlans() {
+        QueryFilterCompiler bounded = new QueryFilterCompiler(Item.class.getName(), 2);
+        String byName = bounded.select(filters(QueryFilter.equal("name", "a")), null, true).getHql();
+        String byQuantity = bounded.select(filters(QueryFilter.equal("quantity", 1)), null, true).getHql();
+        assertSame(byName, bounded.select(filters(QueryFilter.equal("name", "b")), null, true).getHql());
+        bounded.select(filters(QueryFilter.equal("active", true)), null, true);
+        assertEquals(2, bounded.getPlanCount());
+        assertSame(byName, bounded.select(filters(QueryFilter.equal("name", "c")), null, true).getHql());
+        String recompiled = bounded.select(filters(QueryFilter.equal("quantity", 2)), null, true).getHql();
+        assertEquals(byQuantity, recompiled);
+        assertNotSame(byQuantity, recompiled);
+    }
+
+    private void assertRejected(List<QueryFilter> filters, String orderBy) {
+        try {
+            compiler.select(filters, orderBy, true);
+            fail("Invalid property name accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private List<Integer> quantities(CompiledQuery query) {
+        List<Integer> quantities = new ArrayList<>();
+        for (Object item : query.createQuery(session).list())
+            quantities.add(((Item) item).getQuantity());
+        Collections.sort(quantities);
+        return quantities;
+    }
+
+    private static List<QueryFilter> filters(QueryFilter... filters) {
+        return Arrays.asList(filters);
+    }
+}
@@ -0,0 +1,113 @@
+package core.data.access.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * In-memory evaluation of {@link QueryFilter} trees by {@link QueryFilterEvaluator}.
+ * @author Rene Vera Apale
+ */
+public class QueryFilterEvaluatorTest {
+
+    private final Record first = new Record("Primero", 10, true, new Record("Dueño", 1, false, null));
+    private final Record second = new Record("Segundo", 20, false, null);
+    private final Record third = new Record(null, 30, true, new Record("Otro", 50, true, null));
+
+    @Test
+    public void emptyFiltersMatchEverything() {
+        assertEquals(3, filter().size());
+        assertTrue(QueryFilterEvaluator.compile(null).matches(first));
+        assertFalse(QueryFilterEvaluator.compile(null).matches(null));
+    }
+
+    @Test
+    public void filtersBooleanPropertiesWithIsGetters() {
+        assertEquals(Arrays.asList(first, third), filter(QueryFilter.equal("active", true)));
+        assertEquals(Arrays.asList(second), filter(QueryFilter.equal("active", false)));
+        assertEquals(Arrays.asList(third), filter(QueryFilter.equal("owner.active", true)));
+    }
+
+    @Test
+    public void comparesNumbersByValue() {
+        assertEquals(Arrays.asList(second), filter(QueryFilter.equal("quantity", 20L)));
+        assertEquals(Arrays.asList(second, third), filter(QueryFilter.greater("quantity", new BigDecimal("10.0"))));
+        assertEquals(Arrays.asList(first, second), filter(QueryFilter.lowerEqual("quantity", 20.0)));
+        assertEquals(Arrays.asList(first, third), filter(QueryFilter.in("quantity", Arrays.asList(10L, 30.0))));
+    }
+
+    @Test
+    public void equalityToNullMatchesLikeIsNull() {
+        assertEquals(Arrays.asList(third), filter(QueryFilter.equal("name", null)));
+        assertEquals(Arrays.asList(first, second), filter(QueryFilter.notEqual("name", null)));
+        assertEquals(Collections.emptyList(), filter(QueryFilter.greater("name", null)));
+        assertEquals(Arrays.asList(first, second), filter(QueryFilter.notEqual("name", "Tercero")));
+        assertEquals(Arrays.asList(third), filter(QueryFilter.isNull("name")));
+        assertEquals(Arrays.asList(first, third), filter(QueryFilter.isNotNull("owner")));
+    }
+
+    @Test
+    public void likeIsCaseInsensitiveContains() {
+        assertEquals(Arrays.asList(first, second), filter(QueryFilter.ilike("name", "O")));
+        assertEquals(Arrays.asList(first), filter(QueryFilter.ilike("owner.name", "dueñ")));
+    }
+
+    @Test
+    public void comparesProperties() {
+        assertEquals(Arrays.asList(first), filter(QueryFilter.greaterThanProperty("quantity", "owner.quantity")));
+        assertEquals(Arrays.asList(third), filter(QueryFilter.lowerThanProperty("quantity", "owner.quantity")));
+    }
+
+    @Test
+    public void combinesConjunctionsAndDisjunctions() {
+        QueryFilter either = QueryFilter.or(Arrays.asList(QueryFilter.equal("quantity", 10), QueryFilter.equal("quantity", 30)));
+        assertEquals(Arrays.asList(first, third), filter(either));
+        assertEquals(Arrays.asList(third), filter(either, QueryFilter.isNull("name")));
+        QueryFilter both = QueryFilter.and(Arrays.asList(QueryFilter.equal("active", true), QueryFilter.greater("quantity", 10)));
+        assertEquals(Arrays.asList(third), filter(both));
+    }
+
+    private List<Record> filter(QueryFilter... filters) {
+        List<Record> records = new ArrayList<>(Arrays.asList(first, second, third));
+        return QueryFilterEvaluator.compile(Arrays.asList(filters)).filter(records);
+    }
+    /**
+     * Record evaluated by the filters, with a boolean property read through an <i>is</i> getter.
+     */
+    public static class Record {
+
+        private final String name;
+        private final Integer quantity;
+        private final boolean active;
+        private final Record owner;
+
+        public Record(String name, Integer quantity, boolean active, Record owner) {
+            this.name = name;
+            this.quantity = quantity;
+            this.active = active;
+            this.owner = owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public Record getOwner() {
+            return owner;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package core.data.service;
+
+import core.data.Item;
+import core.data.session.H2DataSession;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Bulk writes of {@link AbstractGeneralDataService}, inside and outside an active
+ * transaction, against an H2 database.
+ * @author Rene Vera Apale
+ */
+public class AbstractGeneralDataServiceTest {
+
+    private H2DataSession dataSession;
+    private AbstractGeneralDataService<Item> service;
+    private QueryResultCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSession = new H2DataSession(Item.class);
+        dataSession.init(null);
+        service = new AbstractGeneralDataService<Item>(dataSession, Item.class) {
+        };
+        service.setBatchSize(2);
+        cache = new QueryResultCache();
+        service.setQueryCache(cache);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSession.releaseCurrentSession();
+        dataSession.close();
+    }
+
+    @Test
+    public void writesChunksInTransactionsOfTheirOwn() throws Exception {
+        BatchResult<Item> result = service.createOrUpdateAll(items("a", "b", "c", "d", "e"));
+        assertTrue(result.isComplete());
+        assertEquals(5, result.getSucceeded());
+        assertEquals(5, service.getRecordsCount(null));
+        assertEquals(6, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void reportsOnlyTheRecordsThatFail() throws Exception {
+        List<Item> items = items("a", "b", "demasiado largo", "d", "e");
+        BatchResult<Item> result = service.createOrUpdateAll(items);
+        assertFalse(result.isComplete());
+        assertEquals(4, result.getSucceeded());
+        assertEquals(1, result.getFailures().size());
+        assertSame(items.get(2), result.getFailures().get(0).getRecord());
+        assertEquals(4, service.getRecordsCount(null));
+        assertNotNull(items.get(3).getId());
+    }
+
+    @Test
+    public void flushesEveryBatchWithinActiveTransaction() throws Exception {
+        Statistics statistics = dataSession.getCurrentSession().getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+        dataSession.beginTransaction();
+        try {
+            statistics.clear();
+            BatchResult<Item> result = service.createOrUpdateAll(items("a", "b", "c", "d", "e"));
+            assertEquals(5, result.getSucceeded());
+            assertEquals(3, statistics.getFlushCount());
+            assertEquals(0, dataSession.getCurrentSession().getStatistics().getEntityCount());
+            assertEquals(1, cache.getInvalidationCount());
+            dataSession.commit();
+        } catch (Exception ex) {
+            dataSession.rollback();
+            throw ex;
+        }
+        assertEquals(2, cache.getInvalidationCount());
+        assertEquals(5, service.getRecordsCount(null));
+    }
+
+    @Test
+    public void failsAsAWholeWithinActiveTransaction() throws Exception {
+        dataSession.beginTransaction();
+        try {
+            service.createOrUpdateAll(items("a", "b", "demasiado largo"));
+            fail("Invalid record written");
+        } catch (Exception ex) {
+            // expected
+        } finally {
+            dataSession.rollback();
+        }
+        dataSession.releaseCurrentSession();
+        assertEquals(0, service.getRecordsCount(null));
+    }
+
+    @Test
+    public void deletesInChunks() throws Exception {
+        List<Item> items = items("a", "b", "c");
+        service.createOrUpdateAll(items);
+        BatchResult<Item> result = service.deleteAll(items);
+        assertEquals(3, result.getSucceeded());
+        assertEquals(0, service.getRecordsCount(null));
+    }
+
+    private static List<Item> items(String... names) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < names.length; i++)
+            items.add(new Item(names[i], i, true));
+        return items;
+    }
+}
@@ -0,0 +1,167 @@
+package core.data.service;
+
+import core.data.Item;
+import core.data.session.H2DataSession;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Record cache of {@link CachingDataService} over a service backed by an H2 database:
+ * coalescing of concurrent misses, eviction, and invalidation of written records.
+ * @author Rene Vera Apale
+ */
+public class CachingDataServiceTest {
+
+    private H2DataSession dataSession;
+    private AtomicInteger reads;
+    private volatile CountDownLatch gate;
+    private AbstractGeneralDataService<Item> service;
+    private List<Item> items;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSession = new H2DataSession(Item.class);
+        dataSession.init(null);
+        reads = new AtomicInteger();
+        gate = new CountDownLatch(0);
+        service = new AbstractGeneralDataService<Item>(dataSession, Item.class) {
+            @Override
+            public Item getRecord(int id) throws Exception {
+                reads.incrementAndGet();
+                gate.await(10, TimeUnit.SECONDS);
+                return super.getRecord(id);
+            }
+        };
+        items = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            items.add(new Item("item" + i, i, true));
+        service.createOrUpdateAll(items);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSession.releaseCurrentSession();
+        dataSession.close();
+    }
+
+    @Test
+    public void concurrentMissesReadTheRecordOnce() throws Exception {
+        final CachingDataService<Item> cache = new CachingDataService<>(service);
+        final int id = items.get(0).getId();
+        gate = new CountDownLatch(1);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Item>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(readers.submit(new Callable<Item>() {
+                    @Override
+                    public Item call() throws Exception {
+                        return cache.getRecord(id);
+                    }
+                }));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cache.getMissCount() < 4 && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            gate.countDown();
+            Item first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Item> result : results)
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            assertEquals(1, reads.get());
+            assertEquals(4, cache.getMissCount());
+            assertSame(first, cache.getRecord(id));
+            assertEquals(1, cache.getHitCount());
+        } finally {
+            gate.countDown();
+            readers.shutdown();
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedRecords() throws Exception {
+        CachingDataService<Item> cache = new CachingDataService<>(service, "id", 2, 0, TimeUnit.SECONDS);
+        Item first = cache.getRecord(items.get(0).getId());
+        cache.getRecord(items.get(1).getId());
+        assertSame(first, cache.getRecord(items.get(0).getId()));
+        cache.getRecord(items.get(2).getId());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, reads.get());
+        assertSame(first, cache.getRecord(items.get(0).getId()));
+        cache.getRecord(items.get(1).getId());
+        assertEquals(4, reads.get());
+    }
+
+    @Test
+    public void expiresRecordsAfterTheirTimeToLive() throws Exception {
+        CachingDataService<Item> cache = new CachingDataService<>(service, "id", 10, 20, TimeUnit.MILLISECONDS);
+        int id = items.get(0).getId();
+        Item first = cache.getRecord(id);
+        Thread.sleep(40);
+        assertNotSame(first, cache.getRecord(id));
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void writesInvalidateTheirRecords() throws Exception {
+        CachingDataService<Item> cache = new CachingDataService<>(service);
+        Item cached = cache.getRecord(items.get(0).getId());
+        Item changed = new Item("cambiado", 7, false);
+        changed.setId(cached.getId());
+        changed.setVersion(cached.getVersion());
+        cache.createOrUpdate(changed);
+        assertEquals("cambiado", cache.getRecord(cached.getId()).getName());
+        cache.deleteAll(items.subList(1, 3));
+        assertEquals(null, cache.getRecord(items.get(1).getId()));
+    }
+
+    @Test
+    public void writesOfAnOuterTransactionAreInvalidatedOnCommit() throws Exception {
+        final CachingDataService<Item> cache = new CachingDataService<>(service, dataSession, "id", 10, 0, TimeUnit.SECONDS);
+        final int id = items.get(0).getId();
+        Item cached = cache.getRecord(id);
+        Item changed = new Item("cambiado", 7, false);
+        changed.setId(id);
+        changed.setVersion(cached.getVersion());
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        dataSession.beginTransaction();
+        try {
+            cache.createOrUpdate(changed);
+            dataSession.getCurrentSession().flush();
+            assertEquals(0, cache.size());
+            assertEquals("cambiado", cache.getRecord(id).getName());
+            assertEquals(0, cache.size());
+            Item concurrent = reader.submit(new Callable<Item>() {
+                @Override
+                public Item call() throws Exception {
+                    return cache.getRecord(id);
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals("item0", concurrent.getName());
+            assertEquals(1, cache.size());
+            dataSession.commit();
+        } catch (Exception ex) {
+            dataSession.rollback();
+            throw ex;
+        } finally {
+            reader.shutdown();
+        }
+        assertEquals(0, cache.size());
+        assertEquals("cambiado", cache.getRecord(id).getName());
+        assertTrue(cache.getMissCount() > 0);
+    }
+}
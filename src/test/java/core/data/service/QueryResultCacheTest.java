@@ -0,0 +1,77 @@
+package core.data.service;
+
+import core.data.Item;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Storage, invalidation and eviction of results by {@link QueryResultCache}.
+ * @author Rene Vera Apale
+ */
+public class QueryResultCacheTest {
+
+    private final QueryResultCache cache = new QueryResultCache(2);
+
+    @Test
+    public void returnsStoredResultsAndCountsLookups() {
+        Object result = Arrays.asList("uno");
+        assertNull(cache.get(Item.class, "a"));
+        cache.put(Item.class, "a", result, cache.getGeneration(Item.class));
+        assertSame(result, cache.get(Item.class, "a"));
+        assertNull(cache.get(String.class, "a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void invalidatesOnlyTheWrittenType() {
+        cache.put(Item.class, "a", "items", cache.getGeneration(Item.class));
+        cache.put(String.class, "a", "strings", cache.getGeneration(String.class));
+        cache.invalidate(Item.class);
+        assertNull(cache.get(Item.class, "a"));
+        assertEquals("strings", cache.get(String.class, "a"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void discardsResultsReadBeforeAnInvalidation() {
+        long generation = cache.getGeneration(Item.class);
+        cache.invalidate(Item.class);
+        cache.put(Item.class, "a", "stale", generation);
+        assertNull(cache.get(Item.class, "a"));
+        assertEquals(0, cache.size());
+        cache.put(Item.class, "a", "fresh", cache.getGeneration(Item.class));
+        assertEquals("fresh", cache.get(Item.class, "a"));
+    }
+
+    @Test
+    public void discardsLeastRecentlyUsedResults() {
+        cache.put(Item.class, "a", "a", 0);
+        cache.put(Item.class, "b", "b", 0);
+        cache.get(Item.class, "a");
+        cache.put(Item.class, "c", "c", 0);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(Item.class, "b"));
+        assertEquals("a", cache.get(Item.class, "a"));
+        assertEquals("c", cache.get(Item.class, "c"));
+    }
+
+    @Test
+    public void clearDiscardsEveryResult() {
+        long generation = cache.getGeneration(Item.class);
+        cache.put(Item.class, "a", "a", generation);
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.put(Item.class, "a", "a", generation);
+        assertNull(cache.get(Item.class, "a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        new QueryResultCache(0);
+    }
+}
@@ -0,0 +1,284 @@
+package core.data.session;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Routing of reads by {@link AbstractDataSession#executeReadOnly(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+ * executeReadOnly}, and group commit of writes by {@link AbstractDataSession#executeGrouped(core.data.session.AbstractTransactionOperation, java.lang.Object...)
+ * executeGrouped}, over in-memory H2 databases. The primary database and every replica
+ * hold a single row with their own name, so each read tells where it ran.
+ * @author Rene Vera Apale
+ */
+public class AbstractDataSessionTest {
+
+    private H2DataSession dataSession;
+    private String primary;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = createDatabase("primary");
+        dataSession = new H2DataSession(primary);
+        dataSession.init(null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSession.releaseCurrentSession();
+        dataSession.close();
+    }
+
+    @Test
+    public void readsFromPrimaryWithoutReplicas() throws Exception {
+        assertEquals(primary, readSource());
+    }
+
+    @Test
+    public void readsFromReplicaOutsideTransaction() throws Exception {
+        String replica = createDatabase("replica");
+        useReplicas(replica);
+        assertEquals(replica, readSource());
+        assertEquals(replica, readSource());
+    }
+
+    @Test
+    public void readsFromPrimaryWhenTransactionActive() throws Exception {
+        useReplicas(createDatabase("replica"));
+        dataSession.beginTransaction();
+        try {
+            dataSession.getCurrentSession().createSQLQuery("update source set name = 'uncommitted'").executeUpdate();
+            assertEquals("uncommitted", readSource());
+            assertTrue(dataSession.isTransactionActive());
+        } finally {
+            dataSession.rollback();
+        }
+        assertEquals(primary, dataSession.executeInTransaction(new ReadSource()));
+    }
+
+    @Test
+    public void alternatesBetweenIdleReplicas() throws Exception {
+        String first = createDatabase("replica");
+        String second = createDatabase("replica");
+        useReplicas(first, second);
+        assertEquals(first, readSource());
+        assertEquals(second, readSource());
+        assertEquals(first, readSource());
+        assertEquals(second, readSource());
+    }
+
+    @Test
+    public void prefersLeastLoadedReplica() throws Exception {
+        String first = createDatabase("replica");
+        String second = createDatabase("replica");
+        useReplicas(first, second);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> slowRead = reader.submit(() -> dataSession.executeReadOnly(new AbstractTransactionOperation() {
+                @Override
+                public Object execute(Object... params) {
+                    Object source = new ReadSource().execute();
+                    reading.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return source;
+                }
+            }));
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            assertEquals(second, readSource());
+            assertEquals(second, readSource());
+            release.countDown();
+            assertEquals(first, slowRead.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    public void readsFromPrimaryWhenReplicaUnavailable() throws Exception {
+        SessionFactory replica = H2DataSession.buildFactory(createDatabase("replica"));
+        replica.close();
+        List<SessionFactory> replicas = new ArrayList<>();
+        replicas.add(replica);
+        dataSession.setReplicaFactories(replicas);
+        assertEquals(primary, readSource());
+    }
+
+    @Test
+    public void groupsConcurrentWritesInOneTransaction() throws Exception {
+        createGroupedTable();
+        dataSession.setGroupCommit(3, 10, TimeUnit.SECONDS);
+        List<GroupedInsert> inserts = new ArrayList<>();
+        for (int i = 1; i <= 3; i++)
+            inserts.add(new GroupedInsert(i, false));
+        List<Future<Object>> results = executeConcurrently(inserts);
+        for (int i = 0; i < 3; i++)
+            assertEquals(i + 1, results.get(i).get(10, TimeUnit.SECONDS));
+        assertEquals(1, inserts.get(0).threads.size());
+        for (GroupedInsert insert : inserts) {
+            assertEquals(1, insert.attempts);
+            assertEquals(inserts.get(0).threads, insert.threads);
+        }
+        assertEquals(3, countGrouped());
+    }
+
+    @Test
+    public void retriesEachWriteAloneWhenTheGroupFails() throws Exception {
+        createGroupedTable();
+        dataSession.setGroupCommit(3, 10, TimeUnit.SECONDS);
+        List<GroupedInsert> inserts = new ArrayList<>();
+        inserts.add(new GroupedInsert(1, false));
+        inserts.add(new GroupedInsert(2, true));
+        inserts.add(new GroupedInsert(3, false));
+        List<Future<Object>> results = executeConcurrently(inserts);
+        assertEquals(1, results.get(0).get(10, TimeUnit.SECONDS));
+        assertEquals(3, results.get(2).get(10, TimeUnit.SECONDS));
+        try {
+            results.get(1).get(10, TimeUnit.SECONDS);
+            fail("Failed write succeeded");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, inserts.get(1).attempts);
+        assertEquals(2, countGrouped());
+    }
+
+    @Test
+    public void writesAloneWithoutGroupCommit() throws Exception {
+        createGroupedTable();
+        GroupedInsert insert = new GroupedInsert(1, false);
+        assertEquals(1, dataSession.executeGrouped(insert));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), insert.threads);
+        assertEquals(1, countGrouped());
+    }
+
+    private List<Future<Object>> executeConcurrently(List<GroupedInsert> inserts) throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(inserts.size());
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (final GroupedInsert insert : inserts) {
+                results.add(writers.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        try {
+                            return dataSession.executeGrouped(insert);
+                        } finally {
+                            dataSession.releaseCurrentSession();
+                        }
+                    }
+                }));
+            }
+            for (Future<Object> result : results) {
+                try {
+                    result.get(20, TimeUnit.SECONDS);
+                } catch (ExecutionException ex) {
+                    // checked by the caller
+                }
+            }
+            return results;
+        } finally {
+            writers.shutdown();
+        }
+    }
+
+    private void createGroupedTable() throws Exception {
+        try (Connection connection = DriverManager.getConnection(H2DataSession.url(primary));
+                Statement statement = connection.createStatement()) {
+            statement.execute("create table grouped (id int primary key)");
+        }
+    }
+
+    private int countGrouped() throws Exception {
+        Object count = dataSession.executeInTransaction(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                return dataSession.getCurrentSession().createSQLQuery("select count(*) from grouped").uniqueResult();
+            }
+        });
+        return ((Number) count).intValue();
+    }
+
+    private Object readSource() throws Exception {
+        return dataSession.executeReadOnly(new ReadSource());
+    }
+
+    private void useReplicas(String... names) {
+        List<SessionFactory> replicas = new ArrayList<>();
+        for (String name : names)
+            replicas.add(H2DataSession.buildFactory(name));
+        dataSession.setReplicaFactories(replicas);
+    }
+    /**
+     * Creates an in-memory database holding a single row with its own name.
+     */
+    private static String createDatabase(String prefix) throws Exception {
+        String name = H2DataSession.newDatabaseName(prefix);
+        try (Connection connection = DriverManager.getConnection(H2DataSession.url(name));
+                Statement statement = connection.createStatement()) {
+            statement.execute("create table source (name varchar(40))");
+            statement.execute("insert into source values ('" + name + "')");
+        }
+        return name;
+    }
+    /**
+     * Inserts a row into the grouped table, recording the threads it ran on, and fails
+     * after inserting when asked to.
+     */
+    private class GroupedInsert extends AbstractTransactionOperation {
+
+        private final int id;
+        private final boolean fail;
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        private volatile int attempts;
+
+        GroupedInsert(int id, boolean fail) {
+            this.id = id;
+            this.fail = fail;
+        }
+
+        @Override
+        public Object execute(Object... params) {
+            attempts++;
+            threads.add(Thread.currentThread().getName());
+            dataSession.getCurrentSession().createSQLQuery("insert into grouped values (" + id + ")").executeUpdate();
+            if (fail)
+                throw new IllegalStateException("Rejected write " + id);
+            return id;
+        }
+    }
+    /**
+     * Returns the name held by the database the current session is connected to.
+     */
+    private class ReadSource extends AbstractTransactionOperation {
+
+        @Override
+        public Object execute(Object... params) {
+            return dataSession.getCurrentSession().createSQLQuery("select name from source").uniqueResult();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package core.data.session;
+
+import core.config.AppConfig;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * Data session over an in-memory H2 database, shared by the tests that need a real
+ * database. The schema of the mapped entities is created when the session is initialized.
+ * @author Rene Vera Apale
+ */
+public class H2DataSession extends AbstractDataSession {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final String databaseName;
+    private final Class<?>[] entities;
+    /**
+     * Initializes a session over a new database.
+     * @param entities Mapped classes of the database
+     */
+    public H2DataSession(Class<?>... entities) {
+        this(newDatabaseName("test"), entities);
+    }
+    /**
+     * Initializes a session over the specified database.
+     * @param databaseName Name of the in-memory database
+     * @param entities Mapped classes of the database
+     */
+    public H2DataSession(String databaseName, Class<?>... entities) {
+        this.databaseName = databaseName;
+        this.entities = entities;
+    }
+    /**
+     * Returns a database name not used by any other test.
+     * @param prefix Beginning of the name
+     * @return A unique database name
+     */
+    public static String newDatabaseName(String prefix) {
+        return prefix + "_" + DATABASES.incrementAndGet();
+    }
+    /**
+     * Returns the JDBC URL of an in-memory database, which lives until the JVM exits.
+     * @param databaseName Name of the database
+     * @return the JDBC URL of the database
+     */
+    public static String url(String databaseName) {
+        return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1";
+    }
+    /**
+     * Builds a session factory over an in-memory database, creating the schema of the
+     * specified entities, if any.
+     * @param databaseName Name of the database
+     * @param entities Mapped classes of the database
+     * @return A new session factory
+     */
+    public static SessionFactory buildFactory(String databaseName, Class<?>... entities) {
+        Configuration hibernateCfg = new Configuration();
+        hibernateCfg.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        hibernateCfg.setProperty("hibernate.connection.url", url(databaseName));
+        hibernateCfg.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        hibernateCfg.setProperty("hibernate.current_session_context_class", "thread");
+        if (entities.length > 0)
+            hibernateCfg.setProperty("hibernate.hbm2ddl.auto", "create");
+        for (Class<?> entity : entities)
+            hibernateCfg.addAnnotatedClass(entity);
+        return hibernateCfg.buildSessionFactory();
+    }
+
+    @Override
+    public void init(AppConfig config) {
+        sessionFactory = buildFactory(databaseName, entities);
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeReplicas();
+        sessionFactory.close();
+    }
+
+    @Override
+    public void beginTransaction() throws Exception {
+        getCurrentSession().beginTransaction();
+    }
+
+    @Override
+    public void commit() throws Exception {
+        getCurrentSession().getTransaction().commit();
+    }
+
+    @Override
+    public void rollback() throws Exception {
+        getCurrentSession().getTransaction().rollback();
+    }
+}
@@ -0,0 +1,182 @@
+package core.data.session;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.TransactionException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Retries of {@link TransactionExecutor} and its classification of transient errors,
+ * over an in-memory H2 database. Every attempt inserts a row before failing, so the
+ * rows left tell which attempts were committed.
+ * @author Rene Vera Apale
+ */
+public class TransactionExecutorTest {
+
+    private H2DataSession dataSession;
+    private TransactionExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        String database = H2DataSession.newDatabaseName("executor");
+        try (Connection connection = DriverManager.getConnection(H2DataSession.url(database));
+                Statement statement = connection.createStatement()) {
+            statement.execute("create table attempt (number int)");
+        }
+        dataSession = new H2DataSession(database);
+        dataSession.init(null);
+        executor = new TransactionExecutor(dataSession);
+        executor.setBackoff(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSession.releaseCurrentSession();
+        dataSession.close();
+    }
+
+    @Test
+    public void recognizesTransientErrorsThroughTheirCauses() {
+        assertTrue(executor.isTransient(new LockAcquisitionException("deadlock", new SQLException("deadlock"))));
+        assertTrue(executor.isTransient(new RuntimeException(new SQLException("serialization failure", "40001"))));
+        assertTrue(executor.isTransient(new RuntimeException(new SQLException("deadlock detected", "40P01"))));
+        assertTrue(executor.isTransient(new RuntimeException(new RuntimeException(new SQLException("deadlock", "HY000", 1213)))));
+        assertTrue(executor.isTransient(new SQLException("lock wait timeout", "HY000", 1205)));
+        assertFalse(executor.isTransient(new ConstraintViolationException("duplicate", new SQLException("duplicate", "23505"), "pk")));
+        assertFalse(executor.isTransient(new SQLException("syntax error", "42000", 1064)));
+        assertFalse(executor.isTransient(new IllegalStateException()));
+    }
+
+    @Test
+    public void retriesTransientErrorsUntilAnAttemptSucceeds() throws Exception {
+        FailingInsert operation = new FailingInsert(2, transientError());
+        assertEquals(3, executor.execute(operation));
+        assertEquals(3, operation.attempts);
+        assertEquals(1, countRows());
+        TransactionStatistics statistics = executor.getStatistics();
+        assertEquals(1, statistics.getCount());
+        assertEquals(3, statistics.getAttempts());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getFailures());
+    }
+
+    @Test
+    public void givesUpAfterTheMaximumAttempts() throws Exception {
+        RuntimeException error = transientError();
+        FailingInsert operation = new FailingInsert(5, error);
+        executor.setMaxAttempts(2);
+        try {
+            executor.execute(operation);
+            fail("Failed operation succeeded");
+        } catch (RuntimeException ex) {
+            assertSame(error, ex);
+        }
+        assertEquals(2, operation.attempts);
+        assertEquals(0, countRows());
+        assertEquals(1, executor.getStatistics().getFailures());
+    }
+
+    @Test
+    public void doesNotRetryOtherErrors() throws Exception {
+        FailingInsert operation = new FailingInsert(1, new IllegalStateException("invalid"));
+        try {
+            executor.execute(operation);
+            fail("Failed operation succeeded");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(1, operation.attempts);
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    public void joinsAnActiveTransactionWithoutRetrying() throws Exception {
+        FailingInsert operation = new FailingInsert(1, transientError());
+        dataSession.beginTransaction();
+        try {
+            executor.execute(operation);
+            fail("Failed operation succeeded");
+        } catch (RuntimeException ex) {
+            // expected
+        } finally {
+            dataSession.rollback();
+        }
+        assertEquals(1, operation.attempts);
+    }
+
+    @Test
+    public void rollsBackAttemptsFinishedAfterTheTimeout() throws Exception {
+        executor.setTimeout(50, TimeUnit.MILLISECONDS);
+        FailingInsert operation = new FailingInsert(0, null) {
+            @Override
+            public Object execute(Object... params) {
+                Object result = super.execute(params);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+        };
+        try {
+            executor.execute(operation);
+            fail("Late attempt committed");
+        } catch (TransactionException ex) {
+            // expected
+        }
+        assertEquals(1, operation.attempts);
+        assertEquals(0, countRows());
+        assertEquals(1, executor.getStatistics().getTimeouts());
+    }
+
+    private int countRows() throws Exception {
+        Object count = dataSession.executeInTransaction(new AbstractTransactionOperation() {
+            @Override
+            public Object execute(Object... params) {
+                return dataSession.getCurrentSession().createSQLQuery("select count(*) from attempt").uniqueResult();
+            }
+        });
+        return count instanceof BigInteger ? ((BigInteger) count).intValue() : ((Number) count).intValue();
+    }
+
+    private static RuntimeException transientError() {
+        return new LockAcquisitionException("Deadlock", new SQLException("Deadlock", "40001"));
+    }
+    /**
+     * Inserts a row with the number of the attempt, failing the first attempts.
+     */
+    private class FailingInsert extends AbstractTransactionOperation {
+
+        private final int failures;
+        private final RuntimeException error;
+        private int attempts;
+
+        FailingInsert(int failures, RuntimeException error) {
+            this.failures = failures;
+            this.error = error;
+        }
+
+        @Override
+        public Object execute(Object... params) {
+            attempts++;
+            dataSession.getCurrentSession().createSQLQuery("insert into attempt values (" + attempts + ")").executeUpdate();
+            if (attempts <= failures)
+                throw error;
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package core.gui;
+
+import core.data.access.utils.QueryFilter;
+import core.data.access.utils.QueryFilterEvaluator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Background loading of the pages of {@link PagedRichDataModel}, and the delegation of its
+ * filters, sorts and searches to the loader. The loader runs on a queue drained by the
+ * test, so every load is observed before and after it completes.
+ * @author Rene Vera Apale
+ */
+public class PagedRichDataModelTest {
+
+    private List<RichDataModelTest.Row> source;
+    private List<Runnable> tasks;
+    private PagedRichDataModel<RichDataModelTest.Row> model;
+    private List<TableModelEvent> events;
+    private int loads;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+            source.add(new RichDataModelTest.Row("r" + i, i % 5));
+        tasks = new ArrayList<>();
+        model = new PagedRichDataModel<>(new ListLoader(), 10, 2, new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        model.addColumn(new RichDataColumn("Nombre", "name", String.class));
+        model.addColumn(new RichDataColumn("Cantidad", "quantity", Integer.class));
+        events = new ArrayList<>();
+        model.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(TableModelEvent evt) {
+                events.add(evt);
+            }
+        });
+        model.refresh();
+    }
+
+    @Test
+    public void rowsArePlaceholdersUntilTheirPageArrives() throws Exception {
+        assertEquals(25, model.getRowCount());
+        assertNull(model.getRow(12));
+        assertNull(model.getValueAt(13, 0));
+        assertFalse(model.isRowLoaded(12));
+        assertEquals(1, tasks.size());
+        events.clear();
+        runTasks();
+        assertTrue(model.isRowLoaded(12));
+        assertEquals("r12", model.getRow(12).getName());
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(10, events.get(0).getFirstRow());
+        assertEquals(19, events.get(0).getLastRow());
+        model.getRow(24);
+        runTasks();
+        assertEquals(20, events.get(1).getFirstRow());
+        assertEquals(24, events.get(1).getLastRow());
+        assertEquals(15, model.getLoadedRowCount());
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void keepsOnlyTheLatestPages() throws Exception {
+        model.getRow(0);
+        model.getRow(10);
+        model.getRow(20);
+        runTasks();
+        assertFalse(model.isRowLoaded(0));
+        assertTrue(model.isRowLoaded(10));
+        assertTrue(model.isRowLoaded(20));
+    }
+
+    @Test
+    public void discardsPagesRequestedBeforeReloading() throws Exception {
+        model.getRow(0);
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                model.applyFilter(Collections.singletonList(QueryFilter.equal("quantity", 3)));
+            }
+        });
+        runTasks();
+        assertEquals(5, model.getRowCount());
+        assertFalse(model.isRowLoaded(0));
+        assertNull(model.getRow(0));
+        runTasks();
+        assertEquals("r3", model.getRow(0).getName());
+        assertEquals("r23", model.getRow(4).getName());
+    }
+
+    @Test
+    public void sortsAndSearchesThroughTheLoader() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                model.sortByColumn(1, false);
+            }
+        });
+        runTasks();
+        assertEquals(1, model.getSortColumn());
+        assertFalse(model.isSortAscending());
+        model.getRow(0);
+        runTasks();
+        assertEquals(4, model.getRow(0).getQuantity());
+        List<String> found = new ArrayList<>();
+        for (RichDataModelTest.Row row : model.findRows(1, 2))
+            found.add(row.getName());
+        assertEquals(Arrays.asList("r2", "r7", "r12", "r17", "r22"), found);
+    }
+
+    @Test
+    public void mutationsReloadFromTheSource() throws Exception {
+        source.add(new RichDataModelTest.Row("nuevo", 9));
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                model.addRow(null);
+            }
+        });
+        assertEquals(25, model.getRowCount());
+        runTasks();
+        assertEquals(26, model.getRowCount());
+        model.getRow(25);
+        runTasks();
+        assertEquals("nuevo", model.getRow(25).getName());
+    }
+    /**
+     * Runs the queued loads, then the events they posted to the Event Dispatch Thread.
+     */
+    private void runTasks() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                List<Runnable> queued = new ArrayList<>(tasks);
+                tasks.clear();
+                for (Runnable task : queued)
+                    task.run();
+            }
+        });
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    private static void onEdt(Runnable task) throws Exception {
+        SwingUtilities.invokeAndWait(task);
+    }
+    /**
+     * Loader over the rows of the source list, evaluating the filters in memory.
+     */
+    private class ListLoader implements PagedRichDataModel.PageLoader<RichDataModelTest.Row> {
+
+        @Override
+        public int countRows(List<QueryFilter> filters) {
+            return QueryFilterEvaluator.compile(filters).filter(source).size();
+        }
+
+        @Override
+        public List<RichDataModelTest.Row> loadPage(List<QueryFilter> filters, String orderBy, final boolean ascending, int offset, int limit, RichDataModelTest.Row previous) {
+            loads++;
+            List<RichDataModelTest.Row> rows = new ArrayList<>(QueryFilterEvaluator.compile(filters).filter(source));
+            if ("quantity".equals(orderBy)) {
+                Collections.sort(rows, new Comparator<RichDataModelTest.Row>() {
+                    @Override
+                    public int compare(RichDataModelTest.Row left, RichDataModelTest.Row right) {
+                        int comparison = Integer.compare(left.getQuantity(), right.getQuantity());
+                        return ascending ? comparison : -comparison;
+                    }
+                });
+            }
+            int end = limit == 0 ? rows.size() : Math.min(offset + limit, rows.size());
+            return new ArrayList<>(rows.subList(Math.min(offset, end), end));
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package core.gui;
+
+import core.data.access.utils.QueryFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Maintenance of the column indexes and of the displayed rows of {@link RichDataModel}
+ * as rows are added and removed, and coalescing of the changes queued in coalescing mode.
+ * @author Rene Vera Apale
+ */
+public class RichDataModelTest {
+
+    private RichDataModel<Row> model;
+    private List<TableModelEvent> events;
+
+    @Before
+    public void setUp() {
+        model = new RichDataModel<>();
+        model.addColumn(new RichDataColumn("Nombre", "name", String.class));
+        model.addColumn(new RichDataColumn("Cantidad", "quantity", Integer.class));
+        events = new ArrayList<>();
+        model.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(TableModelEvent evt) {
+                events.add(evt);
+            }
+        });
+    }
+
+    @Test
+    public void sortsByColumnKeepingDataOrderForEqualValues() {
+        model.setData(rows(3, 1, 2, 1, 3));
+        model.sortByColumn(1, true);
+        assertEquals(Arrays.asList("r1", "r3", "r2", "r0", "r4"), displayedNames());
+        model.sortByColumn(1, false);
+        assertEquals(Arrays.asList("r4", "r0", "r2", "r3", "r1"), displayedNames());
+    }
+
+    @Test
+    public void findsRowsThroughTheIndex() {
+        model.setData(rows(3, 1, 2, 1, 3));
+        List<String> found = new ArrayList<>();
+        for (Row row : model.findRows(1, 1))
+            found.add(row.getName());
+        assertEquals(Arrays.asList("r1", "r3"), found);
+        assertEquals(0, model.findRows(1, 7).size());
+    }
+
+    @Test
+    public void addedRowTakesItsSortedPosition() {
+        model.setData(rows(3, 1, 2));
+        model.sortByColumn(1, true);
+        events.clear();
+        model.addRow(new Row("new", 2));
+        assertEquals(Arrays.asList("r1", "r2", "new", "r0"), displayedNames());
+        assertEquals(1, events.size());
+        assertEvent(events.get(0), TableModelEvent.INSERT, 2, 2);
+    }
+
+    @Test
+    public void hiddenRowIsNotAnnounced() {
+        model.setData(rows(3, 1, 2));
+        model.applyFilter(Arrays.asList(QueryFilter.greater("quantity", 1)));
+        events.clear();
+        Row hidden = new Row("hidden", 0);
+        model.addRow(hidden);
+        model.removeRow(hidden);
+        assertEquals(Arrays.asList("r0", "r2"), displayedNames());
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void removedRowLeavesTheView() {
+        model.setData(rows(3, 1, 2, 1, 3));
+        model.sortByColumn(1, false);
+        events.clear();
+        model.removeRow(2);
+        assertEquals(Arrays.asList("r4", "r0", "r3", "r1"), displayedNames());
+        assertEquals(1, events.size());
+        assertEvent(events.get(0), TableModelEvent.DELETE, 2, 2);
+    }
+
+    @Test
+    public void removesRowWhoseSortedValueChanged() {
+        model.setData(rows(3, 1, 2, 1, 3));
+        model.sortByColumn(1, true);
+        Row changed = model.getRow(0);
+        changed.setQuantity(9);
+        events.clear();
+        model.removeRow(0);
+        assertEquals(Arrays.asList("r3", "r2", "r0", "r4"), displayedNames());
+        assertEquals(1, events.size());
+        assertEvent(events.get(0), TableModelEvent.DELETE, 0, 0);
+        model.getRow(1).setQuantity(0);
+        model.removeRow(model.getRow(1));
+        assertEquals(Arrays.asList("r3", "r0", "r4"), displayedNames());
+    }
+
+    @Test
+    public void viewMatchesRebuildAfterRandomChanges() {
+        Random random = new Random(7);
+        model.setData(rows(4, 0, 2, 2, 1, 3));
+        model.applyFilter(Arrays.asList(QueryFilter.notEqual("quantity", 0)));
+        for (int round = 0; round < 4; round++) {
+            model.sortByColumn(1, round % 2 == 0);
+            for (int i = 0; i < 300; i++) {
+                if (model.getRowCount() == 0 || random.nextInt(3) > 0)
+                    model.addRow(new Row("a" + round + "_" + i, random.nextInt(5)));
+                else
+                    model.removeRow(random.nextInt(model.getRowCount()));
+            }
+            List<String> maintained = displayedNames();
+            model.invalidateIndexes();
+            assertEquals(maintained, displayedNames());
+            assertEquals(maintained, expectedNames(round % 2 == 0));
+        }
+    }
+
+    @Test
+    public void queuedChangesWaitForTheFlush() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                model.setCoalescing(true);
+                model.addRow(new Row("a", 1));
+                model.addRow(new Row("b", 2));
+                model.addRows(rows(3, 4));
+                assertEquals(0, model.getRowCount());
+                assertEquals(0, events.size());
+                model.flushPendingChanges();
+                assertEquals(Arrays.asList("a", "b", "r0", "r1"), displayedNames());
+                assertEquals(1, events.size());
+                assertEvent(events.get(0), TableModelEvent.INSERT, 0, 3);
+            }
+        });
+    }
+
+    @Test
+    public void mergesAdjacentChangesOfTheSameKind() throws Exception {
+        model.setData(rows(1, 2, 3));
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                events.clear();
+                model.setCoalescing(true);
+                model.removeRow(0);
+                model.removeRow(0);
+                model.addRow(new Row("new", 4));
+                model.flushPendingChanges();
+                assertEquals(Arrays.asList("r2", "new"), displayedNames());
+                assertEquals(2, events.size());
+                assertEvent(events.get(0), TableModelEvent.DELETE, 0, 1);
+                assertEvent(events.get(1), TableModelEvent.INSERT, 1, 1);
+            }
+        });
+    }
+
+    @Test
+    public void changeOfAllTheDataSupersedesOtherEvents() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                model.setCoalescing(true);
+                model.addRow(new Row("a", 1));
+                model.setData(rows(1, 2));
+                model.addRow(new Row("b", 2));
+                model.setCoalescing(false);
+                assertEquals(Arrays.asList("r0", "r1", "b"), displayedNames());
+                assertEquals(1, events.size());
+                assertEvent(events.get(0), TableModelEvent.UPDATE, 0, Integer.MAX_VALUE);
+            }
+        });
+    }
+
+    @Test
+    public void changesQueuedByOtherThreadsAreAppliedOnTheNextFrame() throws Exception {
+        model.setCoalescing(true);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 50; i++)
+                    model.addRow(new Row("p" + i, i));
+            }
+        });
+        producer.start();
+        producer.join(10000);
+        final int[] count = new int[1];
+        long deadline = System.currentTimeMillis() + 10000;
+        while (count[0] < 50 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(RichDataModel.FRAME_MILLIS);
+            onEdt(new Runnable() {
+                @Override
+                public void run() {
+                    count[0] = model.getRowCount();
+                }
+            });
+        }
+        assertEquals(50, count[0]);
+        assertEquals("p49", model.getRow(49).getName());
+        assertTrue(events.size() < 50);
+        for (TableModelEvent event : events)
+            assertEquals(TableModelEvent.INSERT, event.getType());
+    }
+
+    private static void onEdt(Runnable task) throws Exception {
+        SwingUtilities.invokeAndWait(task);
+    }
+
+    private List<String> displayedNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < model.getRowCount(); i++)
+            names.add(model.getRow(i).getName());
+        return names;
+    }
+    /**
+     * Names of the rows that should be displayed, computed from scratch with a stable sort.
+     */
+    private List<String> expectedNames(final boolean ascending) {
+        model.clearSort();
+        model.clearFilter();
+        List<Row> data = new ArrayList<>();
+        for (int i = 0; i < model.getRowCount(); i++)
+            data.add(model.getRow(i));
+        List<Row> expected = new ArrayList<>();
+        for (Row row : data) {
+            if (row.getQuantity() != 0)
+                expected.add(row);
+        }
+        if (!ascending)
+            Collections.reverse(expected);
+        Collections.sort(expected, new Comparator<Row>() {
+            @Override
+            public int compare(Row left, Row right) {
+                int comparison = Integer.compare(left.getQuantity(), right.getQuantity());
+                return ascending ? comparison : -comparison;
+            }
+        });
+        model.applyFilter(Arrays.asList(QueryFilter.notEqual("quantity", 0)));
+        model.sortByColumn(1, ascending);
+        List<String> names = new ArrayList<>();
+        for (Row row : expected)
+            names.add(row.getName());
+        return names;
+    }
+
+    private static void assertEvent(TableModelEvent event, int type, int firstRow, int lastRow) {
+        assertEquals(type, event.getType());
+        assertEquals(firstRow, event.getFirstRow());
+        assertEquals(lastRow, event.getLastRow());
+    }
+
+    private static List<Row> rows(int... quantities) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < quantities.length; i++)
+            rows.add(new Row("r" + i, quantities[i]));
+        return rows;
+    }
+    /**
+     * Row displayed by the model under test.
+     */
+    public static class Row {
+
+        private String name;
+        private int quantity;
+
+        public Row(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}